@@ -0,0 +1,147 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /v2/members 동기 핸들러와 /v2/members/async 의 처리량 비교.
+ * 클라이언트 스레드(64) 가 Tomcat 스레드(tomcatThreads) 보다 많고, 모든 SQL 이 dbLatencyMs 만큼 느린 상황을 만든다.
+ * 비동기 쪽에서 풀이 포화되어 503 으로 거절된 요청은 rejected 카운터로 따로 집계한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(64)
+public class MemberControllerLoadBenchmark {
+
+    @Param({"10000"})
+    int members;
+
+    @Param({"10"})
+    int teams;
+
+    @Param({"0", "20"})
+    long dbLatencyMs;
+
+    @Param({"20"})
+    int tomcatThreads;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long ok;
+        public long rejected;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .run("--spring.profiles.active=benchmark",
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=" + tomcatThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                                + SlowDatabaseInspector.class.getName(),
+                        "--logging.level.org.hibernate.SQL=warn");
+        seed();
+        SlowDatabaseInspector.delayMillis = dbLatencyMs;
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    private void seed() {
+        SlowDatabaseInspector.delayMillis = 0;
+        EntityManager em = context.getBean(EntityManager.class);
+        MemberJpaRepository memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        tx.executeWithoutResult(status -> {
+            List<Team> teamList = new ArrayList<>();
+            for (int i = 0; i < teams; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                teamList.add(team);
+            }
+            List<Member> memberList = new ArrayList<>(members);
+            for (int i = 0; i < members; i++) {
+                memberList.add(new Member("member" + i, i % 100, teamList.get(i % teams)));
+            }
+            memberJpaRepository.saveAll(memberList);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SlowDatabaseInspector.delayMillis = 0;
+        context.close();
+    }
+
+    @Benchmark
+    public int searchPageSync(Responses responses) throws Exception {
+        return call("/v2/members", responses);
+    }
+
+    @Benchmark
+    public int searchPageAsync(Responses responses) throws Exception {
+        return call("/v2/members/async", responses);
+    }
+
+    /**
+     * 같은 요청이 겹치면 single-flight 로 합쳐지므로 페이지를 섞어서 보낸다.
+     */
+    private int call(String path, Responses responses) throws IOException, InterruptedException {
+        int page = ThreadLocalRandom.current().nextInt(50);
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create(baseUrl + path + "?ageGoe=20&ageLoe=40&size=20&page=" + page))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 503) {
+            responses.rejected++;
+        } else {
+            responses.ok++;
+        }
+        return response.statusCode();
+    }
+}
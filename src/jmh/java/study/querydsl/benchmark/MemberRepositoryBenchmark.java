@@ -0,0 +1,156 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 조회 경로별 성능 비교. 매 trial 마다 in-memory H2 에 members 건을 새로 넣고 측정한다.
+ * caches=false 이면 검색 결과 캐시, count 캐시, 2차/쿼리 캐시를 모두 끄고 쿼리 자체를 잰다.
+ * caches=true 는 같은 조건을 반복하므로 대부분 캐시 적중을 잰다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberRepositoryBenchmark {
+
+    @Param({"10000", "100000"})
+    int members;
+
+    @Param({"10"})
+    int teams;
+
+    @Param({"false", "true"})
+    boolean caches;
+
+    ConfigurableApplicationContext context;
+    MemberJpaRepository memberJpaRepository;
+    MemberRepository memberRepository;
+    MemberTestRepository memberTestRepository;
+
+    MemberSearchCondition condition;
+    Pageable firstPage;
+    Pageable deepPage;
+    String username;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> args = new ArrayList<>(List.of("--spring.profiles.active=benchmark",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--logging.level.org.hibernate.SQL=warn"));
+        if (!caches) {
+            args.addAll(List.of("--querydsl.search-cache.maximum-size=0",
+                    "--querydsl.search-cache.expire-after-write=0s",
+                    "--querydsl.count.cache-max-entries=0",
+                    "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                    "--spring.jpa.properties.hibernate.cache.use_query_cache=false"));
+        }
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        memberTestRepository = context.getBean(MemberTestRepository.class);
+
+        seed();
+
+        condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+        firstPage = PageRequest.of(0, 20);
+        deepPage = PageRequest.of(members / 20 / 10, 20);
+        username = "member" + (members / 2);
+    }
+
+    private void seed() {
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        tx.executeWithoutResult(status -> {
+            List<Team> teamList = new ArrayList<>();
+            for (int i = 0; i < teams; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                teamList.add(team);
+            }
+            List<Member> memberList = new ArrayList<>(members);
+            for (int i = 0; i < members; i++) {
+                memberList.add(new Member("member" + i, i % 100, teamList.get(i % teams)));
+            }
+            memberJpaRepository.saveAll(memberList);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(condition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(condition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplexDeep() {
+        return memberRepository.searchPageComplex(condition, deepPage);
+    }
+
+    @Benchmark
+    public Page<Member> applyPagination() {
+        return memberTestRepository.applyPagination(condition, firstPage);
+    }
+
+    @Benchmark
+    public List<Member> findByUsernameJpql() {
+        return memberJpaRepository.findByUsername(username);
+    }
+
+    @Benchmark
+    public List<Member> findByUsernameQuerydsl() {
+        return memberJpaRepository.findByUsername_Querydsl(username);
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 느린 DB 흉내. SQL 을 준비하기 전에 delayMillis 만큼 멈춘다.
+ * 트랜잭션 안에서 커넥션을 잡은 채로 기다리므로 커넥션 풀이 실제로 점유된다.
+ */
+public class SlowDatabaseInspector implements StatementInspector {
+
+    static volatile long delayMillis;
+
+    @Override
+    public String inspect(String sql) {
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return sql;
+    }
+}
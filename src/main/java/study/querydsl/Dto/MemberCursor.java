@@ -0,0 +1,58 @@
+package study.querydsl.Dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset 페이징의 다음 페이지 시작 위치.
+ * 클라이언트에게는 Base64 로 인코딩된 불투명 토큰으로만 노출한다.
+ * age 가 null 이면 member.id 기준, 아니면 (age, member.id) 기준 정렬의 커서다.
+ */
+@Getter
+public class MemberCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final Integer age;
+    private final Long memberId;
+
+    private MemberCursor(Integer age, Long memberId) {
+        this.age = age;
+        this.memberId = memberId;
+    }
+
+    public static MemberCursor ofId(Long memberId) {
+        return new MemberCursor(null, memberId);
+    }
+
+    public static MemberCursor ofAgeAndId(int age, Long memberId) {
+        return new MemberCursor(age, memberId);
+    }
+
+    public String encode() {
+        String raw = age == null ? String.valueOf(memberId) : age + SEPARATOR + memberId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 토큰이 비어 있으면 null (첫 페이지)
+     */
+    public static MemberCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.indexOf(SEPARATOR);
+            if (idx < 0) {
+                return ofId(Long.parseLong(raw));
+            }
+            return ofAgeAndId(Integer.parseInt(raw.substring(0, idx)), Long.parseLong(raw.substring(idx + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
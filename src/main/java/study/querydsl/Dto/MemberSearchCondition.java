@@ -7,7 +7,33 @@ public class MemberSearchCondition {
     // 회원명, 팀명, 나이(ageGoe, ageLoe)
 
     private String username;
+    // username 부분 일치 / 앞부분 일치
+    private String usernameContains;
+    private String usernameStartsWith;
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+
+    /**
+     * 캐시 키로 쓰기 위해 빈 문자열과 공백을 정리한 사본을 만든다.
+     * "teamA", " teamA", "" 처럼 결과가 같은 조건이 같은 키가 되도록.
+     */
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(trimToNull(username));
+        normalized.setUsernameContains(trimToNull(usernameContains));
+        normalized.setUsernameStartsWith(trimToNull(usernameStartsWith));
+        normalized.setTeamName(trimToNull(teamName));
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
 }
@@ -0,0 +1,51 @@
+package study.querydsl.Dto;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * keyset 페이징 결과. totalCount 없이 다음 페이지 커서만 돌려준다.
+ */
+@Getter
+public class MemberSlice {
+
+    /**
+     * 한 번에 읽을 수 있는 최대 건수. spring.data.web.pageable.max-page-size 와 같은 값
+     */
+    public static final int MAX_SIZE = 2000;
+
+    private final List<MemberTeamDto> content;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    public MemberSlice(List<MemberTeamDto> content, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 요청한 size 를 검증하고 MAX_SIZE 로 제한한다. size + 1 건을 조회하므로 쿼리 전에 호출해야 한다.
+     */
+    public static int checkSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Slice size must be positive: " + size);
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * size + 1 건을 조회한 결과로 slice 를 만든다. 초과분이 있으면 다음 페이지가 있는 것.
+     */
+    public static MemberSlice of(List<MemberTeamDto> rows, int size, Function<MemberTeamDto, MemberCursor> cursorOf) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Slice size must be positive: " + size);
+        }
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new MemberSlice(content, hasNext, nextCursor);
+    }
+}
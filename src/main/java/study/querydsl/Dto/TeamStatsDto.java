@@ -0,0 +1,26 @@
+package study.querydsl.Dto;
+
+import lombok.Data;
+
+/**
+ * 팀별 회원 나이 집계. 회원이 없으면 count 는 0, 나머지는 null (SQL 집계 함수와 같다)
+ */
+@Data
+public class TeamStatsDto {
+
+    private String teamName;
+    private long count;
+    private Long ageSum;
+    private Double ageAvg;
+    private Integer ageMin;
+    private Integer ageMax;
+
+    public TeamStatsDto(String teamName, long count, Long ageSum, Double ageAvg, Integer ageMin, Integer ageMax) {
+        this.teamName = teamName;
+        this.count = count;
+        this.ageSum = ageSum;
+        this.ageAvg = ageAvg;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+}
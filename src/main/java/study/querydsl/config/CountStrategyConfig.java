@@ -0,0 +1,29 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.support.CachedCountStrategy;
+import study.querydsl.support.CountStrategy;
+
+import java.time.Duration;
+
+/**
+ * 검색 total count 는 정확한 count 를 짧게 캐시한다. (CachedCountStrategy + CountStrategy.exact)
+ * 큰 결과에서 "N건 이상" 만 필요하면 CountStrategy.bounded 를 쓴다.
+ * DB 옵티마이저의 예상 행 수(planner estimate)로 답하는 전략은 만들지 않았다. H2 EXPLAIN 은 조건별 예상 행 수를
+ * 안정적으로 돌려주지 않아 정확도를 보장할 수 없기 때문이다. 필요해지면 CountStrategy 구현으로 추가한다.
+ */
+@Configuration
+public class CountStrategyConfig {
+
+    @Bean
+    public CachedCountStrategy cachedCountStrategy(
+            @Value("${querydsl.count.cache-ttl:30s}") Duration ttl,
+            @Value("${querydsl.count.cache-max-entries:10000}") int maxEntries,
+            @Value("${querydsl.datasource.routing.enabled:false}") boolean routing,
+            @Value("${querydsl.datasource.replica.max-lag:1s}") Duration maxLag) {
+        //replica 로 읽으면 커밋 직후 max-lag 동안은 옛 count 를 읽을 수 있으므로 그동안 센 값은 캐시하지 않는다
+        return new CachedCountStrategy(CountStrategy.exact(), ttl, maxEntries, routing ? maxLag : Duration.ZERO);
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 하이버네이트 통계(hibernate.generate_statistics)를 메트릭으로 노출한다.
+ * 통계는 querydsl.metrics.hibernate-statistics=true 일 때만 수집하므로 그때만 등록한다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.metrics.hibernate-statistics", havingValue = "true")
+public class HibernateMetricsConfig {
+
+    @Bean
+    public MeterBinder queryPlanCacheMetrics(EntityManagerFactory emf) {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            FunctionCounter.builder("hibernate.query.plan.cache.hits", statistics,
+                            Statistics::getQueryPlanCacheHitCount)
+                    .register(registry);
+            FunctionCounter.builder("hibernate.query.plan.cache.misses", statistics,
+                            Statistics::getQueryPlanCacheMissCount)
+                    .register(registry);
+        };
+    }
+}
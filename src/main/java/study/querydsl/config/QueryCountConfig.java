@@ -0,0 +1,52 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.support.NPlusOneDetectionInterceptor;
+import study.querydsl.support.QueryCountInspector;
+
+/**
+ * SQL 문장 카운터를 하이버네이트에 걸고, 요청 단위 N+1 경고 인터셉터를 등록한다.
+ * 설정에 이미 statement_inspector 가 있으면 그 뒤에 이어 붙인다.
+ */
+@Configuration
+public class QueryCountConfig implements WebMvcConfigurer {
+
+    private final int threshold;
+
+    public QueryCountConfig(@Value("${querydsl.n-plus-one.threshold:5}") int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCountInspectorCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new QueryCountInspector(configuredInspector(properties.get(AvailableSettings.STATEMENT_INSPECTOR))));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new NPlusOneDetectionInterceptor(threshold));
+    }
+
+    private static StatementInspector configuredInspector(Object configured) {
+        if (configured == null) {
+            return null;
+        }
+        if (configured instanceof StatementInspector) {
+            return (StatementInspector) configured;
+        }
+        Class<?> type = configured instanceof Class
+                ? (Class<?>) configured
+                : ClassUtils.resolveClassName(configured.toString(), QueryCountConfig.class.getClassLoader());
+        return (StatementInspector) BeanUtils.instantiateClass(type);
+    }
+}
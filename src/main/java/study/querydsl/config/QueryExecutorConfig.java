@@ -0,0 +1,47 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class QueryExecutorConfig {
+
+    /**
+     * count 쿼리를 content 쿼리와 동시에 돌리기 위한 전용 풀.
+     * 큐가 가득 차면 호출 스레드에서 직접 실행(CallerRuns)하므로 순차 실행으로 자연스럽게 돌아간다.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor countQueryTaskExecutor(
+            @Value("${querydsl.count.pool-size:4}") int poolSize,
+            @Value("${querydsl.count.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("count-query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * 비동기 검색 엔드포인트 전용 풀. 동시에 DB 를 기다리는 작업 수가 커넥션 풀 크기를 넘지 않도록
+     * 기본 크기를 hikari maximum-pool-size 에 맞춘다.
+     * 큐까지 가득 차면 TaskRejectedException 을 던지고 컨트롤러가 503 으로 응답한다. (요청 스레드에서 대신 돌리지 않는다)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor memberSearchTaskExecutor(
+            @Value("${querydsl.async.pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+            @Value("${querydsl.async.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("member-search-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.config;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.support.ChangePublishingJPAQueryFactory;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 모든 리포지토리가 공유하는 JPAQueryFactory.
+ * 주입받는 EntityManager 는 트랜잭션마다 실제 EntityManager 로 위임하는 프록시이므로 싱글톤으로 써도 안전하다.
+ * 다른 JPA 구현체를 쓰려면 JPQLTemplates 빈을 @Primary 로 하나 더 등록한다.
+ * 벌크 update/delete 는 실행 후 캐시 무효화용 이벤트를 발행한다.
+ */
+@Configuration
+public class QuerydslConfig {
+
+    @Bean
+    public JPQLTemplates jpqlTemplates() {
+        return HQLTemplates.DEFAULT;
+    }
+
+    @Bean
+    public JPAQueryFactory jpaQueryFactory(EntityManager em, JPQLTemplates jpqlTemplates,
+                                           ApplicationEventPublisher publisher) {
+        return new ChangePublishingJPAQueryFactory(jpqlTemplates, em, publisher);
+    }
+}
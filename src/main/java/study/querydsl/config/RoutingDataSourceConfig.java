@@ -0,0 +1,72 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.support.ReadWriteRoutingDataSource;
+import study.querydsl.support.ReadWriteRoutingDataSource.Route;
+import study.querydsl.support.ReplicaLagMonitor;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * querydsl.datasource.routing.enabled=true 이면 spring.datasource 를 primary,
+ * querydsl.datasource.replica 를 replica 로 두고 @Transactional(readOnly = true) 는 replica 로 보낸다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.datasource.routing.enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("querydsl.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource() {
+        return DataSourceBuilder.create().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            @Value("${querydsl.datasource.replica.lag-query:select 0}") String lagQuery,
+            @Value("${querydsl.datasource.replica.max-lag:1s}") Duration maxLag,
+            @Value("${querydsl.datasource.replica.probe-interval:5s}") Duration probeInterval) {
+        return new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, probeInterval);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(replicaLagMonitor);
+        routing.setTargetDataSources(Map.of(Route.PRIMARY, primaryDataSource, Route.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public MeterBinder replicaLagMetrics(ReplicaLagMonitor replicaLagMonitor) {
+        return registry -> Gauge.builder("querydsl.datasource.replica.lag", replicaLagMonitor,
+                        ReplicaLagMonitor::getLagMillis)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
@@ -1,17 +1,21 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
 
-@Profile("local")
+@Profile("local & !loadtest")
 @Component
 @RequiredArgsConstructor
 public class InitMember {
@@ -26,6 +30,8 @@ public class InitMember {
     static class InitMemberService {
         @PersistenceContext
         private EntityManager em;
+        @Autowired
+        private MemberJpaRepository memberJpaRepository;
 
         @Transactional
         public void init() {
@@ -34,10 +40,12 @@ public class InitMember {
             em.persist(teamA);
             em.persist(teamB);
 
+            List<Member> members = new ArrayList<>();
             for (int i = 0; i < 100; i++) {
                 Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
+                members.add(new Member("member" + i, i, selectedTeam));
             }
+            memberJpaRepository.saveAll(members);
         }
     }
 
@@ -0,0 +1,37 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import study.querydsl.service.MemberDataGenerator;
+
+/**
+ * loadtest 프로필에서 InitMember 대신 대량 데이터를 만든다.
+ * CLI 로 데이터만 만들고 끝내려면:
+ * java -jar querydsl.jar --spring.profiles.active=local,loadtest --querydsl.generator.members=5000000 --querydsl.generator.exit=true
+ */
+@Profile("loadtest")
+@Component
+@RequiredArgsConstructor
+public class LoadTestData implements ApplicationRunner {
+
+    private final MemberDataGenerator memberDataGenerator;
+    private final ApplicationContext context;
+
+    @Value("${querydsl.generator.exit:false}")
+    private boolean exitAfterGenerate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        memberDataGenerator.generate();
+        if (exitAfterGenerate) {
+            //컨텍스트를 닫으면 웹 서버와 풀 스레드가 내려가고 남은 스레드가 없으므로 JVM 이 종료된다
+            SpringApplication.exit(context, () -> 0);
+        }
+    }
+}
@@ -1,36 +1,160 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberSlice;
 import study.querydsl.Dto.MemberTeamDto;
-import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.MemberExportService;
+import study.querydsl.service.MemberPageStreamService;
+import study.querydsl.service.MemberSearchAsyncService;
+import study.querydsl.service.MemberSearchService;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
-    private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberSearchService memberSearchService;
+    private final MemberExportService memberExportService;
+    private final MemberSearchAsyncService memberSearchAsyncService;
+    private final MemberPageStreamService memberPageStreamService;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+        return memberSearchService.search(condition);
     }
 
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+        return memberSearchService.searchPageSimple(condition, pageable);
     }
 
+    /**
+     * twoPhase=true 이면 id 만 먼저 페이징한 뒤 그 행들만 읽는다. (깊은 페이지용, id 순)
+     */
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(defaultValue = "false") boolean concurrentCount,
+                                              @RequestParam(defaultValue = "false") boolean twoPhase) {
+        if (twoPhase) {
+            return memberRepository.searchPageTwoPhase(condition, pageable);
+        }
+        return memberSearchService.searchPageComplex(condition, pageable, concurrentCount);
+    }
+
+    /**
+     * v2/v3 과 같은 페이지를 간단한 JSON 으로 응답에 쓴다. (Pageable 메타데이터 없음)
+     * 조회를 먼저 끝내고 헤더와 본문을 쓰므로 조회 실패는 잘린 200 이 아니라 오류 응답이 된다.
+     * 클라이언트가 gzip 을 받을 수 있으면 압축해서 보낸다.
+     */
+    @GetMapping({"/v2/members/stream", "/v3/members/stream"})
+    public void searchMemberStream(MemberSearchCondition condition, Pageable pageable,
+                                   @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                   HttpServletResponse response) throws IOException {
+        Page<MemberTeamDto> page = memberPageStreamService.readPage(condition, pageable);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (memberPageStreamService.useGzip(acceptEncoding)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            try (GZIPOutputStream gzip = new GZIPOutputStream(response.getOutputStream(), 8192)) {
+                memberPageStreamService.write(page, gzip);
+            }
+            return;
+        }
+        memberPageStreamService.write(page, response.getOutputStream());
+    }
+
+    /**
+     * v1~v3 의 비동기 버전. 검색은 memberSearchTaskExecutor 에서 돌고 요청 스레드는 바로 반환된다.
+     */
+    @GetMapping("/v1/members/async")
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1Async(MemberSearchCondition condition) {
+        return memberSearchAsyncService.search(condition);
+    }
+
+    @GetMapping("/v2/members/async")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV2Async(MemberSearchCondition condition,
+                                                                      Pageable pageable) {
+        return memberSearchAsyncService.searchPageSimple(condition, pageable);
+    }
+
+    @GetMapping("/v3/members/async")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3Async(MemberSearchCondition condition,
+                                                                      Pageable pageable,
+                                                                      @RequestParam(defaultValue = "false") boolean concurrentCount) {
+        return memberSearchAsyncService.searchPageComplex(condition, pageable, concurrentCount);
+    }
+
+    /**
+     * 검색 풀이 포화 상태면 요청을 쌓아 두지 않고 바로 거절한다.
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> searchRejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    /**
+     * keyset 페이징. 응답의 nextCursor 를 다음 요청의 cursor 로 넘긴다.
+     * sort=age 이면 (age, id) 순, 아니면 id 순. size 는 MemberSlice.MAX_SIZE 로 제한된다.
+     */
+    @GetMapping("/v4/members")
+    public MemberSlice searchMemberV4(MemberSearchCondition condition,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "20") int size,
+                                      @RequestParam(defaultValue = "id") String sort) {
+        try {
+            if ("age".equals(sort)) {
+                return memberRepository.searchSliceOrderByAge(condition, cursor, size);
+            }
+            return memberRepository.searchSlice(condition, cursor, size);
+        } catch (InvalidDataAccessApiUsageException e) {
+            // 잘못된 cursor / size 는 클라이언트 오류. 리포지토리 프록시가 IllegalArgumentException 을 이것으로 바꿔 던진다.
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMostSpecificCause().getMessage(), e);
+        }
+    }
+
+    /**
+     * 조건에 맞는 회원 전체를 CSV 또는 NDJSON 으로 응답 스트림에 바로 쓴다. 모르는 format 은 400.
+     */
+    @GetMapping("/members/export")
+    public void exportMembers(MemberSearchCondition condition,
+                              @RequestParam(defaultValue = "csv") String format,
+                              HttpServletResponse response) throws IOException {
+        MemberExportService.Format exportFormat;
+        try {
+            exportFormat = MemberExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format: " + format, e);
+        }
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"members." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"");
+        memberExportService.export(condition, exportFormat, response.getOutputStream());
     }
 }
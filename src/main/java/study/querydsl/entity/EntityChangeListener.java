@@ -0,0 +1,43 @@
+package study.querydsl.entity;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA 엔티티 리스너. 스프링 부트는 하이버네이트에 SpringBeanContainer 를 등록하므로
+ * 리스너 인스턴스도 스프링이 만들고 의존관계를 주입해 준다.
+ */
+public class EntityChangeListener {
+
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    public void setPublisher(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        publish(entity, EntityChangedEvent.Type.PERSIST);
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        publish(entity, EntityChangedEvent.Type.UPDATE);
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        publish(entity, EntityChangedEvent.Type.REMOVE);
+    }
+
+    private void publish(Object entity, EntityChangedEvent.Type type) {
+        if (publisher != null) {
+            publisher.publishEvent(new EntityChangedEvent(entity.getClass(), entity, type));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+/**
+ * 엔티티 쓰기 이벤트. 캐시 무효화처럼 쓰기에 반응해야 하는 곳에서 구독한다.
+ * JPQL 벌크 연산은 영속성 컨텍스트를 거치지 않으므로 entity 가 없는 BULK 타입으로 발행된다.
+ * 벌크 update 는 set 한 속성 이름을, 벌크 delete 는 빈 집합을 writtenAttributes 에 담는다. 알 수 없으면(JDBC insert 등) null.
+ */
+@Getter
+@ToString
+public class EntityChangedEvent {
+
+    public enum Type {
+        PERSIST, UPDATE, REMOVE, BULK
+    }
+
+    private final Class<?> entityType;
+    private final Object entity;
+    private final Type type;
+    private final Set<String> writtenAttributes;
+
+    public EntityChangedEvent(Class<?> entityType, Object entity, Type type) {
+        this(entityType, entity, type, null);
+    }
+
+    private EntityChangedEvent(Class<?> entityType, Object entity, Type type, Set<String> writtenAttributes) {
+        this.entityType = entityType;
+        this.entity = entity;
+        this.type = type;
+        this.writtenAttributes = writtenAttributes;
+    }
+
+    public static EntityChangedEvent bulk(Class<?> entityType) {
+        return new EntityChangedEvent(entityType, null, Type.BULK, null);
+    }
+
+    public static EntityChangedEvent bulk(Class<?> entityType, Set<String> writtenAttributes) {
+        return new EntityChangedEvent(entityType, null, Type.BULK, Set.copyOf(writtenAttributes));
+    }
+
+    /**
+     * 이 변경으로 attribute 에 새 값이 들어갔을 수 있는지. 벌크 delete 는 false, 알 수 없으면 true
+     */
+    public boolean mayHaveWritten(String attribute) {
+        return writtenAttributes == null || writtenAttributes.contains(attribute);
+    }
+}
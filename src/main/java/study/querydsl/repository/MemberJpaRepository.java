@@ -3,20 +3,27 @@ package study.querydsl.repository;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.Dto.MemberSearchCondition;
 import study.querydsl.Dto.MemberTeamDto;
 import study.querydsl.Dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.support.QueryMetrics;
 
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
@@ -27,42 +34,92 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberJpaRepository(EntityManager em) {
+    private final QueryMetrics queryMetrics;
+    private final MemberSearchTemplates memberSearchTemplates;
+    private final MemberSearchCache memberSearchCache;
+    private final UsernameBloomFilter usernameBloomFilter;
+    private final int chunkSize;
+
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory, QueryMetrics queryMetrics,
+                               MemberSearchTemplates memberSearchTemplates, MemberSearchCache memberSearchCache,
+                               UsernameBloomFilter usernameBloomFilter,
+                               @Value("${querydsl.batch.chunk-size:500}") int chunkSize) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = queryFactory;
+        this.queryMetrics = queryMetrics;
+        this.memberSearchTemplates = memberSearchTemplates;
+        this.memberSearchCache = memberSearchCache;
+        this.usernameBloomFilter = usernameBloomFilter;
+        this.chunkSize = chunkSize;
     }
 
     public void save(Member member) {
         em.persist(member);
     }
 
+    /**
+     * 대량 저장. chunkSize 건마다 flush 하고 그 chunk 의 회원만 detach 해서 insert 를 JDBC batch 로 묶어 보내고
+     * 영속성 컨텍스트가 커지지 않게 한다. id 는 pooled 시퀀스에서 allocationSize 단위로 받아온다.
+     * 넘긴 회원들은 저장 후 준영속 상태가 된다. 호출하는 쪽 트랜잭션이 이미 관리하던 다른 엔티티(팀 등)는 그대로 둔다.
+     *
+     * @return 저장한 건수
+     */
+    @Transactional
+    public long saveAll(Iterable<Member> members) {
+        long count = 0;
+        List<Member> chunk = new ArrayList<>(chunkSize);
+        for (Member member : members) {
+            em.persist(member);
+            chunk.add(member);
+            if (++count % chunkSize == 0) {
+                flushAndDetach(chunk);
+            }
+        }
+        flushAndDetach(chunk);
+        return count;
+    }
+
+    private void flushAndDetach(List<Member> chunk) {
+        em.flush();
+        chunk.forEach(em::detach);
+        chunk.clear();
+    }
+
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id) {
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
          return em.createQuery("select m from Member m", Member.class)
                  .getResultList();
     }
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl() {
         return queryFactory
                 .selectFrom(member)
                 .fetch();
     }
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
-        return em.createQuery("select m from Member m where m.username =:username", Member.class)
-                .setParameter("username", username)
-                .getResultList();
+        return usernameBloomFilter.findByUsername(username, () ->
+                em.createQuery("select m from Member m where m.username =:username", Member.class)
+                        .setParameter("username", username)
+                        .setHint(QueryHints.HINT_CACHEABLE, true)
+                        .getResultList());
     }
+    @Transactional(readOnly = true)
     public List<Member> findByUsername_Querydsl(String username) {
-        return queryFactory
+        return usernameBloomFilter.findByUsername(username, () -> queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
-                .fetch();
+                .setHint(QueryHints.HINT_CACHEABLE, true)
+                .fetch());
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
 
         BooleanBuilder builder = new BooleanBuilder();
@@ -70,6 +127,12 @@ public class MemberJpaRepository {
         if (hasText(condition.getUsername())) {
             builder.and(member.username.eq(condition.getUsername()));
         }
+        if (hasText(condition.getUsernameContains())) {
+            builder.and(member.username.contains(condition.getUsernameContains()));
+        }
+        if (hasText(condition.getUsernameStartsWith())) {
+            builder.and(member.username.startsWith(condition.getUsernameStartsWith()));
+        }
         if (hasText(condition.getTeamName())) {
             builder.and(team.name.eq(condition.getTeamName()));
         }
@@ -79,7 +142,7 @@ public class MemberJpaRepository {
         if (condition.getAgeLoe() != null) {
             builder.and(member.age.loe(condition.getAgeLoe()));
         }
-        return queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -88,11 +151,20 @@ public class MemberJpaRepository {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(builder)
-                .fetch();
+                .where(builder);
+        return queryMetrics.fetch("MemberJpaRepository.searchByBuilder", query);
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return memberSearchCache.get(condition, memberSearchTemplates::search);
+    }
+    /**
+     * 전체를 List 로 올리지 않고 JDBC fetch size 단위로 읽어 오는 스트림.
+     * 반드시 트랜잭션 안에서 소비하고 다 쓰면 close 해야 한다.
+     * 트랜잭션은 호출하는 쪽이 연다. (readOnly 로 열면 replica 에서 읽는다)
+     */
+    public Stream<MemberTeamDto> streamSearch(MemberSearchCondition condition, int fetchSize) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -103,17 +175,29 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
-                .fetch();
+                .orderBy(member.id.asc())
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .stream();
     }
+
     private BooleanExpression usernameEq(String username) {
         return isEmpty(username) ? null : member.username.eq(username);
     }
+    private BooleanExpression usernameContains(String usernameContains) {
+        return hasText(usernameContains) ? member.username.contains(usernameContains) : null;
+    }
+    private BooleanExpression usernameStartsWith(String usernameStartsWith) {
+        return hasText(usernameStartsWith) ? member.username.startsWith(usernameStartsWith) : null;
+    }
     private BooleanExpression teamNameEq(String teamName) {
-        return isEmpty(teamName) ? null : member.username.eq(teamName);
+        return isEmpty(teamName) ? null : team.name.eq(teamName);
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -3,24 +3,26 @@ package study.querydsl.repository;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.Dto.MemberSearchCondition;
 import study.querydsl.Dto.MemberTeamDto;
 import study.querydsl.Dto.QMemberTeamDto;
 
-import javax.persistence.EntityManager;
 import java.util.List;
 
+import static org.springframework.util.StringUtils.hasText;
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberQueryRepository {
 
-    private JPAQueryFactory queryFactory;
+    private final JPAQueryFactory queryFactory;
 
-    public MemberQueryRepository(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberQueryRepository(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
@@ -34,6 +36,8 @@ public class MemberQueryRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -43,6 +47,12 @@ public class MemberQueryRepository {
     private BooleanExpression usernameEq(String username) {
         return isEmpty(username) ? null : member.username.eq(username);
     }
+    private BooleanExpression usernameContains(String usernameContains) {
+        return hasText(usernameContains) ? member.username.contains(usernameContains) : null;
+    }
+    private BooleanExpression usernameStartsWith(String usernameStartsWith) {
+        return hasText(usernameStartsWith) ? member.username.startsWith(usernameStartsWith) : null;
+    }
     private BooleanExpression teamNameEq(String teamName) {
         return isEmpty(teamName) ? null : team.name.eq(teamName);
     }
@@ -3,12 +3,20 @@ package study.querydsl.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberSlice;
 import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.Member;
 
 import java.util.List;
 
 public interface MemberRepositoryCustom {
+    List<Member> findByUsername(String username);
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageTwoPhase(MemberSearchCondition condition, Pageable pageable);
+    List<MemberTeamDto> searchContent(MemberSearchCondition condition, Pageable pageable);
+    long countBySearch(MemberSearchCondition condition);
+    MemberSlice searchSlice(MemberSearchCondition condition, String cursor, int size);
+    MemberSlice searchSliceOrderByAge(MemberSearchCondition condition, String cursor, int size);
 }
@@ -1,54 +1,124 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.Dto.MemberCursor;
 import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberSlice;
 import study.querydsl.Dto.MemberTeamDto;
 import study.querydsl.Dto.QMemberDto;
 import study.querydsl.Dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.support.CachedCountStrategy;
+import study.querydsl.support.CountQueries;
+import study.querydsl.support.EntityPathRegistry;
+import study.querydsl.support.QueryMetrics;
 
 import javax.persistence.EntityManager;
 import javax.swing.text.html.parser.Entity;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+/**
+ * 검색 메서드는 들어오자마자 조건을 normalize 해서, 쿼리 조건과 캐시/single-flight 키가 같은 조건에서 만들어지게 한다.
+ */
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
+    private final EntityManager em;
+    private final JPQLTemplates templates;
     private final JPAQueryFactory queryFactory;
+    private final CachedCountStrategy cachedCountStrategy;
+    private final QueryMetrics queryMetrics;
+    private final MemberSearchTemplates memberSearchTemplates;
+    private final MemberSearchCache memberSearchCache;
+    private final MemberSearchIndex memberSearchIndex;
+    private final UsernameBloomFilter usernameBloomFilter;
+    private final Querydsl memberQuerydsl;
 
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberRepositoryImpl(EntityManager em, JPAQueryFactory queryFactory, JPQLTemplates templates,
+                                CachedCountStrategy cachedCountStrategy,
+                                QueryMetrics queryMetrics, MemberSearchTemplates memberSearchTemplates,
+                                MemberSearchCache memberSearchCache, MemberSearchIndex memberSearchIndex,
+                                UsernameBloomFilter usernameBloomFilter, EntityPathRegistry entityPathRegistry) {
+        this.em = em;
+        this.templates = templates;
+        this.queryFactory = queryFactory;
+        this.cachedCountStrategy = cachedCountStrategy;
+        this.queryMetrics = queryMetrics;
+        this.memberSearchTemplates = memberSearchTemplates;
+        this.memberSearchCache = memberSearchCache;
+        this.memberSearchIndex = memberSearchIndex;
+        this.usernameBloomFilter = usernameBloomFilter;
+        this.memberQuerydsl = entityPathRegistry.querydsl(Member.class);
     }
 
+    /**
+     * 가입 시 중복 확인처럼 대부분 없는 username 을 찾으므로 Bloom filter 가 "없음" 이면 DB 에 가지 않는다.
+     */
+    @Override
+    public List<Member> findByUsername(String username) {
+        return usernameBloomFilter.findByUsername(username, () -> queryFactory
+                .selectFrom(member)
+                .where(member.username.eq(username))
+                .setHint(QueryHints.HINT_CACHEABLE, true)
+                .fetch());
+    }
+
+    /**
+     * 결과 캐시 → DB 순으로 읽는다. 메모리 인덱스는 MemberSearchService 가 먼저 본다.
+     */
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        return memberSearchCache.get(condition.normalize(), memberSearchTemplates::search);
     }
 
     private BooleanExpression usernameEq(String username) {
         return isEmpty(username) ? null : member.username.eq(username);
     }
+    /**
+     * usernameContains/usernameStartsWith. 메모리 인덱스가 커밋된 변경을 모두 반영한 상태면 n-gram 으로 좁힌 id 목록을
+     * in 조건으로 같이 걸어 like '%x%' 가 member 전체를 훑지 않게 한다. 인덱스는 querydsl.memory-index.enabled 로 켜며(기본 false),
+     * 꺼져 있거나 재빌드 중이거나 반영 중인 커밋이 있으면 like 만 걸리므로 usernameContains 단독 검색은 전체 스캔이다.
+     * ({@link MemberSearchIndex#usernameCandidates})
+     */
+    private BooleanExpression usernameMatches(MemberSearchCondition condition) {
+        BooleanExpression like = usernameLike(condition.getUsernameContains(), condition.getUsernameStartsWith());
+        if (like == null) {
+            return null;
+        }
+        return memberSearchIndex.usernameCandidates(condition)
+                .map(ids -> ids.isEmpty() ? Expressions.FALSE.isTrue() : member.id.in(ids).and(like))
+                .orElse(like);
+    }
+
+    private BooleanExpression usernameLike(String contains, String startsWith) {
+        BooleanExpression containsExpr = contains == null ? null : member.username.contains(contains);
+        BooleanExpression startsWithExpr = startsWith == null ? null : member.username.startsWith(startsWith);
+        if (containsExpr == null) {
+            return startsWithExpr;
+        }
+        return startsWithExpr == null ? containsExpr : containsExpr.and(startsWithExpr);
+    }
+
     private BooleanExpression teamNameEq(String teamName) {
         return isEmpty(teamName) ? null : team.name.eq(teamName);
     }
@@ -61,9 +131,13 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
 
+    /**
+     * 같은 조건으로 동시에 들어온 요청을 합치는 것은 MemberSearchService 가 트랜잭션 밖에서 한다.
+     */
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
+        condition = condition.normalize();
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -74,44 +148,136 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+                .limit(pageable.getPageSize());
+        //fetchResults 와 같은 두 쿼리지만 content/count 시간을 따로 잰다. count 쿼리는 offset/limit/projection 을 뺀 것
+        List<MemberTeamDto> content = queryMetrics.fetch("MemberRepository.searchPageSimple", query);
+        JPAQuery<?> countQuery = CountQueries.derive(em, templates, query);
+        long total = queryMetrics.count("MemberRepository.searchPageSimple", countQuery,
+                () -> CountQueries.count(countQuery));
 
         return new PageImpl<>(content, pageable, total);
     }
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        condition = condition.normalize();
         List<MemberTeamDto> content = getMemberTeamDtos(condition, pageable);
 
         long total = getTotal(condition);
         return new PageImpl<>(content, pageable, total);
     }
 
+    /**
+     * searchPageComplex 의 2단계 버전. 1단계는 팀 이름 조건이 있을 때만 team 을 조인해 member.id 만
+     * pageable 의 정렬(+ id tiebreaker, 정렬이 없으면 id 순)로 offset/limit 해서 읽고,
+     * 2단계는 그 id 들의 행만 team 과 조인해 읽은 뒤 1단계 순서대로 다시 세운다.
+     * 깊은 페이지에서 버려질 행의 username/team 컬럼과 조인을 읽지 않는다.
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageTwoPhase(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition normalized = condition.normalize();
+        List<MemberTeamDto> content = getMemberTeamDtosTwoPhase(normalized, pageable);
+        return PageableExecutionUtils.getPage(content, pageable, () -> getTotal(normalized));
+    }
+
+    /**
+     * searchPageComplex 의 content 만 읽는다. count 가 필요한지, count 를 동시에 돌릴지는 호출하는 쪽이 정한다.
+     */
+    @Override
+    public List<MemberTeamDto> searchContent(MemberSearchCondition condition, Pageable pageable) {
+        condition = condition.normalize();
+        return getMemberTeamDtos(condition, pageable);
+    }
+
+    @Override
+    public long countBySearch(MemberSearchCondition condition) {
+        condition = condition.normalize();
+        return getTotal(condition);
+    }
+
     private long getTotal(MemberSearchCondition condition) {
-        long total = queryFactory
+        JPAQuery<Member> query = queryFactory
                 .select(member)
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                )
-                .fetchCount();
-        return total;
+                );
+        //teamName 조건이 없으면 team 조인은 count 에서 빠진다
+        JPAQuery<?> countQuery = CountQueries.derive(em, templates, query);
+        return queryMetrics.count("MemberRepository.searchPageComplex", countQuery,
+                cachedCountStrategy, condition);
     }
 
     private List<MemberTeamDto> getMemberTeamDtos(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        JPAQuery<MemberTeamDto> query = contentQuery(condition, pageable);
+        List<MemberTeamDto> content = queryMetrics.fetch("MemberRepository.searchPageComplex", query);
+        return content;
+    }
+
+    private List<MemberTeamDto> getMemberTeamDtosTwoPhase(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<Long> idQuery = queryFactory
+                .select(member.id)
+                .from(member);
+        if (!isEmpty(condition.getTeamName())) {
+            idQuery.join(member.team, team);
+        }
+        idQuery.where(usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+        memberQuerydsl.applySorting(withIdTiebreaker(pageable.getSort()), idQuery);
+        List<Long> ids = queryMetrics.fetch("MemberRepository.searchPageTwoPhase", idQuery);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        JPAQuery<MemberTeamDto> rows = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids));
+        return inIdOrder(ids, queryMetrics.fetch("MemberRepository.searchPageTwoPhase", rows));
+    }
+
+    /**
+     * 정렬 컬럼(age 등)이 유일하지 않으면 같은 값 사이의 순서가 실행마다 달라 페이지 경계에서 행이 겹치거나 빠진다.
+     */
+    private static Sort withIdTiebreaker(Sort sort) {
+        return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+    }
+
+    private static List<MemberTeamDto> inIdOrder(List<Long> ids, List<MemberTeamDto> rows) {
+        Map<Long, Integer> position = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            position.put(ids.get(i), i);
+        }
+        List<MemberTeamDto> ordered = new ArrayList<>(rows);
+        ordered.sort(Comparator.comparing(row -> position.get(row.getMemberId())));
+        return ordered;
+    }
+
+    private JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition, Pageable pageable) {
+        return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -122,13 +288,90 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
-        return content;
+                .limit(pageable.getPageSize());
+    }
+
+    /**
+     * keyset(seek) 페이징. offset 대신 마지막으로 읽은 member.id 이후부터 읽으므로
+     * 페이지 깊이와 상관없이 인덱스 탐색 한 번으로 다음 페이지를 가져온다.
+     */
+    @Override
+    public MemberSlice searchSlice(MemberSearchCondition condition, String cursor, int size) {
+        condition = condition.normalize();
+        int limit = MemberSlice.checkSize(size);
+        MemberCursor after = MemberCursor.decode(cursor);
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()),
+                        idAfter(after)
+                )
+                .orderBy(member.id.asc())
+                .limit(limit + 1);
+        List<MemberTeamDto> rows = queryMetrics.fetch("MemberRepository.searchSlice", query);
+        return MemberSlice.of(rows, limit, dto -> MemberCursor.ofId(dto.getMemberId()));
+    }
+
+    /**
+     * (age, member.id) 정렬 기준의 keyset 페이징
+     */
+    @Override
+    public MemberSlice searchSliceOrderByAge(MemberSearchCondition condition, String cursor, int size) {
+        condition = condition.normalize();
+        int limit = MemberSlice.checkSize(size);
+        MemberCursor after = MemberCursor.decode(cursor);
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()),
+                        ageAndIdAfter(after)
+                )
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(limit + 1);
+        List<MemberTeamDto> rows = queryMetrics.fetch("MemberRepository.searchSliceOrderByAge", query);
+        return MemberSlice.of(rows, limit, dto -> MemberCursor.ofAgeAndId(dto.getAge(), dto.getMemberId()));
+    }
+
+    private BooleanExpression idAfter(MemberCursor cursor) {
+        return cursor == null ? null : member.id.gt(cursor.getMemberId());
+    }
+
+    private BooleanExpression ageAndIdAfter(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        if (cursor.getAge() == null) {
+            throw new IllegalArgumentException("Cursor was not issued for age ordering");
+        }
+        return member.age.gt(cursor.getAge())
+                .or(member.age.eq(cursor.getAge()).and(member.id.gt(cursor.getMemberId())));
     }
 }
@@ -0,0 +1,110 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CacheInvalidation;
+import study.querydsl.support.Transactions;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * search(MemberSearchCondition) 결과 캐시. 키는 정규화된 검색 조건이다.
+ * <p>
+ * Member/Team 이 저장·수정·삭제되거나 벌크 update/delete 가 실행되면 전부 비운다.
+ * 조건별로 골라 비우려면 수정 전 값(어느 조건에서 빠지는지)이 필요한데 엔티티 리스너 이벤트에는 수정 후 값만 있어서
+ * 전체 무효화로 둔다. 쓰기가 잦아 적중률이 떨어지면 expire-after-write 보다 이 부분을 먼저 본다.
+ * 쓰기 트랜잭션 안에서는 커밋 전 데이터가 캐시에 들어가지 않도록 캐시를 거치지 않는다.
+ * 조회하는 동안 무효화가 있었으면 그 결과는 캐시에 남기지 않는다. ({@link CacheInvalidation})
+ * 캐시된 목록은 여러 요청이 공유하므로 수정하면 안 된다.
+ * <p>
+ * 적중률은 cache.gets{cache=memberSearch, result=hit|miss} 메트릭으로 본다.
+ */
+@Component
+public class MemberSearchCache {
+
+    private final Cache<MemberSearchCondition, List<MemberTeamDto>> cache;
+    private final CacheInvalidation invalidation;
+
+    @Autowired
+    public MemberSearchCache(MeterRegistry registry,
+                             @Value("${querydsl.search-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${querydsl.search-cache.expire-after-write:60s}") Duration expireAfterWrite,
+                             @Value("${querydsl.datasource.routing.enabled:false}") boolean routing,
+                             @Value("${querydsl.datasource.replica.max-lag:1s}") Duration maxLag) {
+        this(registry, maximumSize, expireAfterWrite, routing ? maxLag : Duration.ZERO);
+    }
+
+    /**
+     * @param replicaLag 읽기가 replica 로 가면 허용 복제 지연. 무효화 후 이 시간 안에 읽은 결과는 캐시하지 않는다.
+     */
+    public MemberSearchCache(MeterRegistry registry, long maximumSize, Duration expireAfterWrite, Duration replicaLag) {
+        this.invalidation = new CacheInvalidation(replicaLag);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "memberSearch");
+    }
+
+    public List<MemberTeamDto> get(MemberSearchCondition condition,
+                                   Function<MemberSearchCondition, List<MemberTeamDto>> loader) {
+        // 트랜잭션과 상관없이 같은 입력은 같은 (정규화된) 조건으로 조회한다
+        MemberSearchCondition key = condition.normalize();
+        if (Transactions.inWritableTransaction()) {
+            return loader.apply(key);
+        }
+        CacheInvalidation.Ticket ticket = invalidation.begin();
+        boolean[] loaded = new boolean[1];
+        List<MemberTeamDto> result = cache.get(key, k -> {
+            loaded[0] = true;
+            return Collections.unmodifiableList(loader.apply(k));
+        });
+        if (loaded[0] && !invalidation.isCurrent(ticket)) {
+            cache.asMap().remove(key, result);
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        invalidation.invalidate();
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (isSearchedEntity(event)) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * 커밋 전에 다른 트랜잭션이 옛 데이터를 다시 캐싱했을 수 있으므로 커밋 후 한 번 더 비운다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void afterEntityChangeCommitted(EntityChangedEvent event) {
+        if (isSearchedEntity(event)) {
+            invalidateAll();
+        }
+    }
+
+    private boolean isSearchedEntity(EntityChangedEvent event) {
+        return Member.class.isAssignableFrom(event.getEntityType()) || Team.class.isAssignableFrom(event.getEntityType());
+    }
+}
@@ -0,0 +1,945 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.Transactions;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * MemberSearchCondition 검색을 DB 대신 메모리에서 답하는 인덱스. (querydsl.memory-index.enabled=true 일 때만)
+ * <p>
+ * 회원 전체를 id 순 열 배열(long id, int age, team 번호, username)로 들고,
+ * username 해시 체인(int 배열 두 개), username 3글자 조각(trigram) → 행 번호, 팀 번호 → 행 BitSet, 나이순 행 번호 배열을
+ * 보조 인덱스로 둔다. 가장 좁은 조건 하나로 후보를 고른 뒤 나머지 조건은 열 배열에서 바로 거른다. 결과는 id 순이다.
+ * <p>
+ * 열 배열(Base)은 불변이다. 커밋된 Member/Team PERSIST/UPDATE/REMOVE 이벤트는 id → 행 overlay 와 팀 이름 맵을
+ * 복사해 바꾼 새 State 로 반영하고, overlay 가 compact-threshold 를 넘으면 메모리 안에서 Base 로 합친다.
+ * 테이블을 다시 읽는 것은 처음 로딩과 BULK 이벤트(행을 알 수 없음)뿐이며, BULK 는 rebuild-delay 만큼 모아서 한 번 읽는다.
+ * 쓰기 트랜잭션 안의 조회는 커밋 전 데이터를 봐야 하므로 항상 DB 로 보낸다.
+ * <p>
+ * 변경은 이 애플리케이션의 엔티티 이벤트로만 알 수 있다. 다른 노드나 SQL 로 직접 바꾼 행은 rebuild 전까지 보이지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberSearchIndex {
+
+    private static final int GRAM = 3;
+
+    private static final String LOAD_SQL = "select m.member_id, m.username, m.age, m.team_id, t.name" +
+            " from member m left join team t on m.team_id = t.id order by m.member_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration rebuildDelay;
+    private final int candidateLimit;
+    private final int compactThreshold;
+    private final ScheduledExecutorService rebuilder;
+    private final AtomicLong bulkVersion = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final Object writeLock = new Object();
+    /**
+     * Member/Team 을 바꿨지만 아직 반영하지 않은 트랜잭션 수. 커밋 직전부터 반영이 끝날 때까지 센다
+     */
+    private final AtomicInteger unappliedTransactions = new AtomicInteger();
+
+    private volatile State state;
+    /**
+     * 테이블을 읽는 동안 들어온 변경. 읽기가 끝나면 새 Base 위에 다시 적용한다. writeLock 으로 보호
+     */
+    private List<UnaryOperator<State>> journal;
+
+    public MemberSearchIndex(JdbcTemplate jdbcTemplate,
+                             @Value("${querydsl.memory-index.enabled:false}") boolean enabled,
+                             @Value("${querydsl.memory-index.rebuild-delay:1s}") Duration rebuildDelay,
+                             @Value("${querydsl.memory-index.candidate-limit:1000}") int candidateLimit,
+                             @Value("${querydsl.memory-index.compact-threshold:4096}") int compactThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.rebuildDelay = rebuildDelay;
+        this.candidateLimit = candidateLimit;
+        this.compactThreshold = compactThreshold;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return 인덱스가 최신이면 결과, 꺼져 있거나 stale 이면 empty (DB 로 조회해야 한다)
+     */
+    public Optional<List<MemberTeamDto>> search(MemberSearchCondition condition) {
+        State current = usableState();
+        if (current == null) {
+            return Optional.empty();
+        }
+        return Optional.of(current.match(condition.normalize()).toList(0, Integer.MAX_VALUE));
+    }
+
+    /**
+     * 정렬 없는 Pageable 만 처리한다. 정렬이 있으면 empty
+     */
+    public Optional<Page<MemberTeamDto>> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            return Optional.empty();
+        }
+        State current = usableState();
+        if (current == null) {
+            return Optional.empty();
+        }
+        Matches matches = current.match(condition.normalize());
+        long skip = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        return Optional.of(new PageImpl<>(matches.toList(skip, limit), pageable, matches.size()));
+    }
+
+    /**
+     * usernameContains/usernameStartsWith 조건을 n-gram 으로 좁힌 회원 id.
+     * DB 조회에 id in (...) 으로 같이 걸리므로, 인덱스에 없는 커밋된 행이 있으면 그 행이 결과에서 빠진다.
+     * 그래서 search 보다 엄격하게, 반영하지 않은 트랜잭션이 하나도 없을 때만 낸다.
+     * 확인 뒤 DB 조회 전에 커밋된 변경은 커밋 전에 조회한 것처럼 보인다.
+     * 인덱스가 최신이 아니거나, 패턴이 3글자 미만이거나, 후보가 candidateLimit 를 넘으면 empty (like 로만 거른다)
+     */
+    public Optional<List<Long>> usernameCandidates(MemberSearchCondition condition) {
+        State current = usableState();
+        if (current == null || unappliedTransactions.get() > 0) {
+            return Optional.empty();
+        }
+        long[] ids = current.usernameCandidateIds(condition.normalize());
+        if (ids == null || ids.length > candidateLimit) {
+            return Optional.empty();
+        }
+        return Optional.of(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    public boolean isStale() {
+        State current = state;
+        return current == null || current.stale;
+    }
+
+    private State usableState() {
+        if (!enabled || Transactions.inWritableTransaction()) {
+            return null;
+        }
+        State current = state;
+        return current != null && !current.stale ? current : null;
+    }
+
+    /**
+     * 테이블 전체를 다시 읽어 교체한다. 읽는 동안 들어온 행 단위 변경은 새 Base 위에 다시 적용하고,
+     * 읽는 동안 BULK 가 또 있었으면 교체하지 않고 다시 예약한다.
+     */
+    public synchronized void rebuild() {
+        long version = bulkVersion.get();
+        long started = System.nanoTime();
+        synchronized (writeLock) {
+            journal = new ArrayList<>();
+        }
+        Map<Long, String> teamNames = new HashMap<>();
+        Base loaded;
+        try {
+            loaded = load(teamNames);
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                journal = null;
+            }
+            throw e;
+        }
+        synchronized (writeLock) {
+            List<UnaryOperator<State>> changes = journal;
+            journal = null;
+            if (version != bulkVersion.get()) {
+                scheduleRebuild();
+                return;
+            }
+            State fresh = new State(loaded, Collections.emptyMap(), teamNames, false);
+            for (UnaryOperator<State> change : changes) {
+                fresh = change.apply(fresh);
+            }
+            state = fresh;
+        }
+        log.info("member search index loaded: {} rows in {}ms",
+                loaded.ids.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * overlay 를 Base 에 합친다. DB 를 읽지 않는다. 합치는 동안 들어온 변경은 overlay 에 남긴다.
+     */
+    void compact() {
+        State before = state;
+        if (before == null || before.overlay.isEmpty()) {
+            return;
+        }
+        Base merged = before.mergedBase();
+        synchronized (writeLock) {
+            State current = state;
+            if (current == null || current.base != before.base) {
+                return; // 그 사이 테이블을 다시 읽었다
+            }
+            Map<Long, Row> remaining = new HashMap<>();
+            current.overlay.forEach((id, row) -> {
+                if (before.overlay.get(id) != row) {
+                    remaining.put(id, row);
+                }
+            });
+            state = new State(merged, remaining, current.teamNames, current.stale);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            rebuildScheduled.set(true);
+            rebuilder.execute(this::runScheduledRebuild);
+        }
+    }
+
+    /**
+     * 커밋된 변경만 반영한다. 커밋 전까지 다른 트랜잭션은 원래 값을 봐야 하고, 롤백되면 반영할 것이 없다.
+     * 트랜잭션 안의 이벤트는 트랜잭션별로 모았다가 완료될 때 반영하고, 그때까지 unappliedTransactions 로 센다.
+     * (이벤트는 flush 때 나오므로 DB 커밋보다 먼저 세어진다) 트랜잭션 밖에서 발행된 이벤트는 바로 반영한다.
+     */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!enabled || !isIndexedEntity(event)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyCommitted(event);
+            return;
+        }
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            unappliedTransactions.incrementAndGet();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.events.add(event);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void applyCommitted(EntityChangedEvent event) {
+        if (event.getType() == EntityChangedEvent.Type.BULK || event.getEntity() == null) {
+            markStale();
+            return;
+        }
+        apply(changeOf(event));
+    }
+
+    private void markStale() {
+        bulkVersion.incrementAndGet();
+        apply(State::asStale);
+        scheduleRebuild();
+    }
+
+    private void apply(UnaryOperator<State> change) {
+        int pending;
+        synchronized (writeLock) {
+            if (journal != null) {
+                journal.add(change);
+            }
+            State current = state;
+            if (current == null) {
+                return;
+            }
+            state = change.apply(current);
+            pending = state.overlay.size();
+        }
+        if (pending >= compactThreshold && compactionScheduled.compareAndSet(false, true)) {
+            rebuilder.execute(this::runScheduledCompaction);
+        }
+    }
+
+    private static UnaryOperator<State> changeOf(EntityChangedEvent event) {
+        boolean removed = event.getType() == EntityChangedEvent.Type.REMOVE;
+        if (event.getEntity() instanceof Team) {
+            Team team = (Team) event.getEntity();
+            long id = team.getId();
+            String name = removed ? null : team.getName();
+            return current -> current.withTeam(id, name);
+        }
+        Member member = (Member) event.getEntity();
+        Row row = removed
+                ? Row.removed(member.getId())
+                : new Row(member.getId(), member.getUsername(), member.getAge(),
+                member.getTeam() == null ? null : member.getTeam().getId());
+        return current -> current.withMember(row);
+    }
+
+    private void scheduleRebuild() {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::runScheduledRebuild, rebuildDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runScheduledRebuild() {
+        rebuildScheduled.set(false);
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("member search index rebuild failed, searches fall back to the database", e);
+        }
+    }
+
+    private void runScheduledCompaction() {
+        compactionScheduled.set(false);
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("member search index compaction failed", e);
+        }
+    }
+
+    /**
+     * 한 트랜잭션에서 나온 변경. 다른 트랜잭션으로 잠시 넘어가는(REQUIRES_NEW) 동안에는 바인딩을 풀어 둔다.
+     */
+    private class PendingChanges implements TransactionSynchronization {
+
+        private final List<EntityChangedEvent> events = new ArrayList<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(MemberSearchIndex.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(MemberSearchIndex.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(MemberSearchIndex.this);
+            try {
+                if (status == STATUS_COMMITTED) {
+                    events.forEach(MemberSearchIndex.this::applyCommitted);
+                } else if (status == STATUS_UNKNOWN) {
+                    // 커밋됐는지 알 수 없으니 다시 읽는다
+                    markStale();
+                }
+            } catch (RuntimeException e) {
+                log.warn("member search index update failed, reloading", e);
+                markStale();
+            } finally {
+                unappliedTransactions.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean isIndexedEntity(EntityChangedEvent event) {
+        return Member.class.isAssignableFrom(event.getEntityType()) || Team.class.isAssignableFrom(event.getEntityType());
+    }
+
+    private Base load(Map<Long, String> teamNames) {
+        BaseBuilder builder = new BaseBuilder();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            long teamId = rs.getLong(4);
+            boolean hasTeam = !rs.wasNull();
+            if (hasTeam) {
+                teamNames.put(teamId, rs.getString(5));
+            }
+            builder.add(rs.getLong(1), rs.getString(2), rs.getInt(3), hasTeam ? teamId : null);
+        });
+        return builder.build();
+    }
+
+    /**
+     * 중복 없는 3글자 조각. 행 번호 순으로 posting 이 쌓이도록 한 행의 조각은 한 번씩만 낸다.
+     */
+    private static Set<String> trigrams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static boolean matchesUsernamePattern(String username, MemberSearchCondition condition) {
+        if (condition.getUsernameContains() != null
+                && (username == null || !username.contains(condition.getUsernameContains()))) {
+            return false;
+        }
+        return condition.getUsernameStartsWith() == null
+                || (username != null && username.startsWith(condition.getUsernameStartsWith()));
+    }
+
+    /**
+     * overlay 한 행. removed 면 그 id 는 삭제됐다.
+     */
+    private static final class Row {
+        final long id;
+        final String username;
+        final int age;
+        final Long teamId;
+        final boolean removed;
+
+        Row(long id, String username, int age, Long teamId) {
+            this(id, username, age, teamId, false);
+        }
+
+        private Row(long id, String username, int age, Long teamId, boolean removed) {
+            this.id = id;
+            this.username = username;
+            this.age = age;
+            this.teamId = teamId;
+            this.removed = removed;
+        }
+
+        static Row removed(long id) {
+            return new Row(id, null, 0, null, true);
+        }
+    }
+
+    /**
+     * 한 시점의 인덱스. 바꿀 때는 overlay/teamNames 를 복사한 새 State 를 만든다.
+     * overlay 는 compact-threshold 이하로 유지되므로 복사 비용은 Base 크기와 무관하다.
+     */
+    private static final class State {
+        final Base base;
+        final Map<Long, Row> overlay;
+        final Map<Long, String> teamNames;
+        final boolean stale;
+
+        private volatile BitSet shadowed;
+        private volatile List<Row> liveRows;
+
+        State(Base base, Map<Long, Row> overlay, Map<Long, String> teamNames, boolean stale) {
+            this.base = base;
+            this.overlay = overlay;
+            this.teamNames = teamNames;
+            this.stale = stale;
+        }
+
+        State withMember(Row row) {
+            Map<Long, Row> changed = new HashMap<>(overlay);
+            changed.put(row.id, row);
+            return new State(base, changed, teamNames, stale);
+        }
+
+        State withTeam(long id, String name) {
+            Map<Long, String> changed = new HashMap<>(teamNames);
+            if (name == null) {
+                changed.remove(id);
+            } else {
+                changed.put(id, name);
+            }
+            return new State(base, overlay, changed, stale);
+        }
+
+        State asStale() {
+            return stale ? this : new State(base, overlay, teamNames, true);
+        }
+
+        /**
+         * overlay 에 있는 id 의 Base 행. 검색 결과에서 빼야 한다.
+         */
+        BitSet shadowed() {
+            BitSet result = shadowed;
+            if (result == null) {
+                result = new BitSet(base.ids.length);
+                for (Long id : overlay.keySet()) {
+                    int row = Arrays.binarySearch(base.ids, id);
+                    if (row >= 0) {
+                        result.set(row);
+                    }
+                }
+                shadowed = result;
+            }
+            return result;
+        }
+
+        /**
+         * 삭제되지 않은 overlay 행, id 순
+         */
+        List<Row> liveRows() {
+            List<Row> result = liveRows;
+            if (result == null) {
+                result = overlay.values().stream()
+                        .filter(row -> !row.removed)
+                        .sorted(Comparator.comparingLong(row -> row.id))
+                        .collect(Collectors.toList());
+                liveRows = result;
+            }
+            return result;
+        }
+
+        Matches match(MemberSearchCondition condition) {
+            BitSet teamRows = null;
+            if (condition.getTeamName() != null) {
+                teamRows = new BitSet(base.ids.length);
+                for (int team = 0; team < base.teamIds.length; team++) {
+                    if (condition.getTeamName().equals(teamNames.get(base.teamIds[team]))) {
+                        teamRows.or(base.rowsByTeam[team]);
+                    }
+                }
+            }
+            BitSet rows = base.match(condition, teamRows);
+            rows.andNot(shadowed());
+            List<Row> rowMatches = new ArrayList<>();
+            for (Row row : liveRows()) {
+                if (matches(row, condition)) {
+                    rowMatches.add(row);
+                }
+            }
+            return new Matches(this, rows, rowMatches);
+        }
+
+        private boolean matches(Row row, MemberSearchCondition condition) {
+            if (condition.getUsername() != null && !condition.getUsername().equals(row.username)) {
+                return false;
+            }
+            if (!matchesUsernamePattern(row.username, condition)) {
+                return false;
+            }
+            if (condition.getTeamName() != null
+                    && (row.teamId == null || !condition.getTeamName().equals(teamNames.get(row.teamId)))) {
+                return false;
+            }
+            if (condition.getAgeGoe() != null && row.age < condition.getAgeGoe()) {
+                return false;
+            }
+            return condition.getAgeLoe() == null || row.age <= condition.getAgeLoe();
+        }
+
+        /**
+         * username 패턴 조건만 검증한 후보 id. trigram 으로 좁힐 수 없으면 null
+         */
+        long[] usernameCandidateIds(MemberSearchCondition condition) {
+            int[] rows = base.trigramRows(condition);
+            if (rows == null) {
+                return null;
+            }
+            BitSet shadowedRows = shadowed();
+            return LongStream.concat(
+                    Arrays.stream(rows)
+                            .filter(row -> !shadowedRows.get(row) && matchesUsernamePattern(base.usernames[row], condition))
+                            .mapToLong(row -> base.ids[row]),
+                    liveRows().stream()
+                            .filter(row -> matchesUsernamePattern(row.username, condition))
+                            .mapToLong(row -> row.id))
+                    .toArray();
+        }
+
+        MemberTeamDto toDto(int row) {
+            int team = base.teams[row];
+            Long teamId = team < 0 ? null : base.teamIds[team];
+            return new MemberTeamDto(base.ids[row], base.usernames[row], base.ages[row],
+                    teamId, teamId == null ? null : teamNames.get(teamId));
+        }
+
+        MemberTeamDto toDto(Row row) {
+            return new MemberTeamDto(row.id, row.username, row.age,
+                    row.teamId, row.teamId == null ? null : teamNames.get(row.teamId));
+        }
+
+        /**
+         * Base 와 overlay 를 id 순으로 합친 새 Base
+         */
+        Base mergedBase() {
+            BaseBuilder builder = new BaseBuilder();
+            BitSet shadowedRows = shadowed();
+            List<Row> rows = liveRows();
+            int next = 0;
+            for (int row = 0; row < base.ids.length; row++) {
+                while (next < rows.size() && rows.get(next).id < base.ids[row]) {
+                    Row added = rows.get(next++);
+                    builder.add(added.id, added.username, added.age, added.teamId);
+                }
+                if (!shadowedRows.get(row)) {
+                    int team = base.teams[row];
+                    builder.add(base.ids[row], base.usernames[row], base.ages[row], team < 0 ? null : base.teamIds[team]);
+                }
+            }
+            for (; next < rows.size(); next++) {
+                Row added = rows.get(next);
+                builder.add(added.id, added.username, added.age, added.teamId);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * 검색 결과. Base 행(BitSet)과 overlay 행(id 순)을 id 순으로 합쳐 읽는다.
+     */
+    private static final class Matches {
+        private final State state;
+        private final BitSet baseRows;
+        private final List<Row> rows;
+
+        Matches(State state, BitSet baseRows, List<Row> rows) {
+            this.state = state;
+            this.baseRows = baseRows;
+            this.rows = rows;
+        }
+
+        int size() {
+            return baseRows.cardinality() + rows.size();
+        }
+
+        List<MemberTeamDto> toList(long skip, int limit) {
+            List<MemberTeamDto> result = new ArrayList<>(Math.min(limit, size()));
+            int baseRow = baseRows.nextSetBit(0);
+            int next = 0;
+            while (result.size() < limit && (baseRow >= 0 || next < rows.size())) {
+                boolean fromBase = next == rows.size()
+                        || (baseRow >= 0 && state.base.ids[baseRow] < rows.get(next).id);
+                MemberTeamDto dto = null;
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    dto = fromBase ? state.toDto(baseRow) : state.toDto(rows.get(next));
+                }
+                if (fromBase) {
+                    baseRow = baseRows.nextSetBit(baseRow + 1);
+                } else {
+                    next++;
+                }
+                if (dto != null) {
+                    result.add(dto);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class RowList {
+        private int[] rows = new int[4];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+
+    /**
+     * id 오름차순으로 add 해야 한다.
+     */
+    private static final class BaseBuilder {
+        private long[] ids = new long[1024];
+        private int[] ages = new int[1024];
+        private int[] teams = new int[1024];
+        private String[] usernames = new String[1024];
+        private int size;
+        private final Map<Long, Integer> teamIndex = new HashMap<>();
+        private final List<Long> teamIds = new ArrayList<>();
+
+        void add(long id, String username, int age, Long teamId) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teams = Arrays.copyOf(teams, capacity);
+                usernames = Arrays.copyOf(usernames, capacity);
+            }
+            ids[size] = id;
+            ages[size] = age;
+            usernames[size] = username;
+            teams[size] = teamId == null ? -1 : teamIndex.computeIfAbsent(teamId, key -> {
+                teamIds.add(key);
+                return teamIds.size() - 1;
+            });
+            size++;
+        }
+
+        Base build() {
+            return new Base(Arrays.copyOf(ids, size), Arrays.copyOf(ages, size),
+                    Arrays.copyOf(teams, size), Arrays.copyOf(usernames, size),
+                    teamIds.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    /**
+     * 불변 열 배열과 보조 인덱스. 팀 이름은 바뀔 수 있으므로 여기 두지 않고 State 의 teamNames 로 찾는다.
+     */
+    private static final class Base {
+        final long[] ids;
+        final int[] ages;
+        final int[] teams;
+        final String[] usernames;
+        final long[] teamIds;
+        /**
+         * username 해시 → 첫 행, 행 → 같은 버킷의 다음 행. 없으면 -1
+         */
+        final int[] usernameBuckets;
+        final int[] usernameNext;
+        final BitSet[] rowsByTeam;
+        final Map<String, int[]> rowsByTrigram;
+        final int[] rowsByAge;
+        final int[] sortedAges;
+
+        Base(long[] ids, int[] ages, int[] teams, String[] usernames, long[] teamIds) {
+            this.ids = ids;
+            this.ages = ages;
+            this.teams = teams;
+            this.usernames = usernames;
+            this.teamIds = teamIds;
+
+            this.usernameBuckets = new int[bucketCount(ids.length)];
+            this.usernameNext = new int[ids.length];
+            Arrays.fill(usernameBuckets, -1);
+            this.rowsByTeam = new BitSet[teamIds.length];
+            for (int team = 0; team < teamIds.length; team++) {
+                rowsByTeam[team] = new BitSet(ids.length);
+            }
+            for (int row = 0; row < ids.length; row++) {
+                usernameNext[row] = -1;
+                if (usernames[row] != null) {
+                    int bucket = bucket(usernames[row]);
+                    usernameNext[row] = usernameBuckets[bucket];
+                    usernameBuckets[bucket] = row;
+                }
+                if (teams[row] >= 0) {
+                    rowsByTeam[teams[row]].set(row);
+                }
+            }
+
+            Map<String, RowList> byTrigram = new HashMap<>();
+            for (int row = 0; row < ids.length; row++) {
+                if (usernames[row] != null) {
+                    for (String gram : trigrams(usernames[row])) {
+                        byTrigram.computeIfAbsent(gram, key -> new RowList()).add(row);
+                    }
+                }
+            }
+            Map<String, int[]> trigramRows = new HashMap<>(byTrigram.size() * 2);
+            byTrigram.forEach((gram, rows) -> trigramRows.put(gram, rows.toArray()));
+            this.rowsByTrigram = trigramRows;
+
+            this.rowsByAge = sortRowsByAge(ages);
+            this.sortedAges = new int[ids.length];
+            for (int i = 0; i < rowsByAge.length; i++) {
+                sortedAges[i] = ages[rowsByAge[i]];
+            }
+        }
+
+        private static int bucketCount(int rows) {
+            return Integer.highestOneBit(Math.max(rows, 8) - 1) << 2;
+        }
+
+        private int bucket(String username) {
+            int hash = username.hashCode();
+            return (hash ^ (hash >>> 16)) & (usernameBuckets.length - 1);
+        }
+
+        /**
+         * 나이 값 범위가 좁으므로 counting sort. 같은 나이 안에서는 행(=id) 순서가 유지된다.
+         */
+        private static int[] sortRowsByAge(int[] ages) {
+            if (ages.length == 0) {
+                return new int[0];
+            }
+            int min = Arrays.stream(ages).min().getAsInt();
+            int max = Arrays.stream(ages).max().getAsInt();
+            int[] start = new int[max - min + 2];
+            for (int age : ages) {
+                start[age - min + 1]++;
+            }
+            for (int i = 1; i < start.length; i++) {
+                start[i] += start[i - 1];
+            }
+            int[] sorted = new int[ages.length];
+            for (int row = 0; row < ages.length; row++) {
+                sorted[start[ages[row] - min]++] = row;
+            }
+            return sorted;
+        }
+
+        /**
+         * @param teamRows 팀 이름 조건에 맞는 행. 조건이 없으면 null
+         */
+        BitSet match(MemberSearchCondition condition, BitSet teamRows) {
+            BitSet rows = candidates(condition, teamRows);
+            if (teamRows != null) {
+                rows.and(teamRows);
+            }
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (!matches(row, condition)) {
+                    rows.clear(row);
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * 가장 좁을 것 같은 조건 하나로 후보 행을 고른다. username 일치 > n-gram > 팀 > 나이 범위 > 전체
+         */
+        private BitSet candidates(MemberSearchCondition condition, BitSet teamRows) {
+            BitSet candidates = new BitSet(ids.length);
+            if (condition.getUsername() != null) {
+                for (int row = usernameBuckets[bucket(condition.getUsername())]; row >= 0; row = usernameNext[row]) {
+                    if (condition.getUsername().equals(usernames[row])) {
+                        candidates.set(row);
+                    }
+                }
+                return candidates;
+            }
+            int[] gramRows = trigramRows(condition);
+            if (gramRows != null) {
+                for (int row : gramRows) {
+                    candidates.set(row);
+                }
+                return candidates;
+            }
+            if (teamRows != null) {
+                return (BitSet) teamRows.clone();
+            }
+            if (condition.getAgeGoe() != null || condition.getAgeLoe() != null) {
+                int from = condition.getAgeGoe() == null ? 0 : lowerBound(condition.getAgeGoe());
+                int to = condition.getAgeLoe() == null ? rowsByAge.length : upperBound(condition.getAgeLoe());
+                for (int i = from; i < to; i++) {
+                    candidates.set(rowsByAge[i]);
+                }
+                return candidates;
+            }
+            candidates.set(0, ids.length);
+            return candidates;
+        }
+
+        /**
+         * 팀 조건은 match 에서 teamRows 로 이미 걸렀다.
+         */
+        private boolean matches(int row, MemberSearchCondition condition) {
+            if (condition.getUsername() != null && !condition.getUsername().equals(usernames[row])) {
+                return false;
+            }
+            if (!matchesUsernamePattern(usernames[row], condition)) {
+                return false;
+            }
+            if (condition.getAgeGoe() != null && ages[row] < condition.getAgeGoe()) {
+                return false;
+            }
+            return condition.getAgeLoe() == null || ages[row] <= condition.getAgeLoe();
+        }
+
+        /**
+         * usernameContains/usernameStartsWith 중 긴 쪽의 trigram posting 교집합.
+         * 3글자 미만이라 trigram 으로 좁힐 수 없으면 null
+         */
+        int[] trigramRows(MemberSearchCondition condition) {
+            String pattern = longer(condition.getUsernameContains(), condition.getUsernameStartsWith());
+            if (pattern == null || pattern.length() < GRAM) {
+                return null;
+            }
+            List<int[]> postings = new ArrayList<>();
+            for (String gram : trigrams(pattern)) {
+                int[] rows = rowsByTrigram.get(gram);
+                if (rows == null) {
+                    return new int[0];
+                }
+                postings.add(rows);
+            }
+            postings.sort(Comparator.comparingInt(rows -> rows.length));
+            int[] result = postings.get(0);
+            for (int i = 1; i < postings.size() && result.length > 0; i++) {
+                result = intersect(result, postings.get(i));
+            }
+            return result;
+        }
+
+        private static String longer(String a, String b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return a.length() >= b.length() ? a : b;
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] result = new int[Math.min(a.length, b.length)];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+
+        /**
+         * age 이상인 첫 위치
+         */
+        private int lowerBound(int age) {
+            return bound(age, false);
+        }
+
+        /**
+         * age 보다 큰 첫 위치. age + 1 로 lowerBound 를 부르면 Integer.MAX_VALUE 에서 넘친다
+         */
+        private int upperBound(int age) {
+            return bound(age, true);
+        }
+
+        private int bound(int age, boolean skipEqual) {
+            int low = 0;
+            int high = sortedAges.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedAges[mid] < age || skipEqual && sortedAges[mid] == age) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
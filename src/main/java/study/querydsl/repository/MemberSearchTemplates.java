@@ -0,0 +1,122 @@
+package study.querydsl.repository;
+
+import org.springframework.stereotype.Repository;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.support.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.util.StringUtils.hasLength;
+
+/**
+ * MemberSearchCondition 검색용 JPQL 을 조건 조합(shape)별로 미리 만들어 둔다.
+ * 조건 6개의 유무로 만들어지는 쿼리는 64가지뿐이라 매 요청마다 Querydsl 식을 만들고 직렬화할 필요가 없다.
+ * 같은 JPQL 문자열을 재사용하므로 하이버네이트 query plan cache 도 항상 적중한다.
+ */
+@Repository
+public class MemberSearchTemplates {
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+    private static final int USERNAME_CONTAINS = 1 << 4;
+    private static final int USERNAME_STARTS_WITH = 1 << 5;
+
+    private static final String SELECT =
+            "select new study.querydsl.Dto.MemberTeamDto(m.id, m.username, m.age, t.id, t.name) from Member m";
+
+    private final EntityManager em;
+    private final QueryMetrics queryMetrics;
+    private final String[] jpqlByShape = new String[64];
+
+    public MemberSearchTemplates(EntityManager em, QueryMetrics queryMetrics) {
+        this.em = em;
+        this.queryMetrics = queryMetrics;
+        for (int shape = 0; shape < jpqlByShape.length; shape++) {
+            jpqlByShape[shape] = render(shape);
+        }
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        int shape = 0;
+        if (hasLength(condition.getUsername())) {
+            shape |= USERNAME;
+            params.put("username", condition.getUsername());
+        }
+        if (hasLength(condition.getUsernameContains())) {
+            shape |= USERNAME_CONTAINS;
+            params.put("usernameContains", "%" + escapeLike(condition.getUsernameContains()) + "%");
+        }
+        if (hasLength(condition.getUsernameStartsWith())) {
+            shape |= USERNAME_STARTS_WITH;
+            params.put("usernameStartsWith", escapeLike(condition.getUsernameStartsWith()) + "%");
+        }
+        if (hasLength(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+            params.put("teamName", condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+            params.put("ageGoe", condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+            params.put("ageLoe", condition.getAgeLoe());
+        }
+
+        String jpql = jpqlByShape[shape];
+        return queryMetrics.fetch("MemberSearchTemplates.search", jpql, params, () -> {
+            TypedQuery<MemberTeamDto> query = em.createQuery(jpql, MemberTeamDto.class);
+            params.forEach(query::setParameter);
+            return query.getResultList();
+        });
+    }
+
+    /**
+     * like 패턴 안의 값은 그대로 비교되도록 %, _, ! 를 이스케이프한다. (Querydsl 과 같은 '!' 사용)
+     */
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * 팀 이름 조건이 있으면 팀 없는 회원은 어차피 걸러지므로 inner join 으로 바꾼다.
+     * left join 이면 member 를 먼저 전체 스캔해야 하지만 inner join 이면 team.name 인덱스에서 출발할 수 있다.
+     */
+    private static String render(int shape) {
+        StringBuilder jpql = new StringBuilder(SELECT)
+                .append((shape & TEAM_NAME) != 0 ? " join m.team t" : " left join m.team t");
+        String keyword = " where ";
+        if ((shape & USERNAME) != 0) {
+            jpql.append(keyword).append("m.username = :username");
+            keyword = " and ";
+        }
+        if ((shape & USERNAME_CONTAINS) != 0) {
+            jpql.append(keyword).append("m.username like :usernameContains escape '!'");
+            keyword = " and ";
+        }
+        if ((shape & USERNAME_STARTS_WITH) != 0) {
+            jpql.append(keyword).append("m.username like :usernameStartsWith escape '!'");
+            keyword = " and ";
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            jpql.append(keyword).append("t.name = :teamName");
+            keyword = " and ";
+        }
+        if ((shape & AGE_GOE) != 0) {
+            jpql.append(keyword).append("m.age >= :ageGoe");
+            keyword = " and ";
+        }
+        if ((shape & AGE_LOE) != 0) {
+            jpql.append(keyword).append("m.age <= :ageLoe");
+        }
+        return jpql.toString();
+    }
+}
@@ -1,18 +1,27 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.Dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.support.BulkProgressListener;
+import study.querydsl.support.CountStrategy;
 import study.querydsl.support.Querydsl4RepositorySupport;
 
 import java.util.List;
 
+import static org.springframework.util.StringUtils.hasText;
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
@@ -38,6 +47,8 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
     public Page<Member> searchPageByApplyPAge(MemberSearchCondition condition, Pageable pageable) {
         JPAQuery<Member> query = selectFrom(member)
                 .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -51,15 +62,126 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         return applyPagination(pageable, query ->
                 query.selectFrom(member)
                 .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
         );
     }
+
+    public Page<Member> searchPage(MemberSearchCondition condition, Pageable pageable, CountStrategy countStrategy) {
+        return applyPagination(pageable, contentQuery -> contentQuery
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                ), countQuery -> countQuery
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                ), countStrategy, condition.normalize());
+    }
+
+    public Slice<Member> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        return applySlicing(pageable, query -> query
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                ));
+    }
+
+    /**
+     * 2단계 페이징. 1단계는 팀 이름 조건이 있을 때만 team 을 조인해 member.id 만 읽는다.
+     */
+    public Page<MemberTeamDto> searchPageTwoPhase(MemberSearchCondition condition, Pageable pageable) {
+        return applyTwoPhasePagination(pageable, idQuery -> {
+                    JPAQuery<Long> query = idQuery.select(member.id).from(member);
+                    if (hasText(condition.getTeamName())) {
+                        query.join(member.team, team);
+                    }
+                    return query.where(usernameEq(condition.getUsername()),
+                            usernameContains(condition.getUsernameContains()),
+                            usernameStartsWith(condition.getUsernameStartsWith()),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe()));
+                }, (contentQuery, ids) -> contentQuery
+                        .select(new QMemberTeamDto(
+                                member.id,
+                                member.username,
+                                member.age,
+                                team.id,
+                                team.name))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(member.id.in(ids)),
+                MemberTeamDto::getMemberId,
+                countQuery -> countQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                usernameContains(condition.getUsernameContains()),
+                                usernameStartsWith(condition.getUsernameStartsWith()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())));
+    }
+
+    /**
+     * 조건에 맞는 회원의 나이를 한 살씩 올린다. (연 단위 age-rollover 배치)
+     * 벌크 update 에서는 join 을 쓸 수 없어 팀 이름 조건은 서브쿼리로 건다.
+     */
+    public long increaseAge(MemberSearchCondition condition, int chunkSize, BulkProgressListener listener) {
+        return bulkUpdate(ExpressionUtils.allOf(
+                        usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernameStartsWith(condition.getUsernameStartsWith()),
+                        teamNameIn(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())),
+                update -> update.set(member.age, member.age.add(1)),
+                chunkSize, listener);
+    }
+
+    /**
+     * from 팀 소속 회원 전체를 to 팀으로 옮긴다.
+     */
+    public long reassignTeam(Team from, Team to, int chunkSize) {
+        return bulkUpdate(member.team.eq(from), update -> update.set(member.team, to), chunkSize);
+    }
+
+    private BooleanExpression teamNameIn(String teamName) {
+        return isEmpty(teamName) ? null : member.team.id.in(JPAExpressions
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(teamName)));
+    }
+
     private BooleanExpression usernameEq(String username) {
         return isEmpty(username) ? null : member.username.eq(username);
     }
+    private BooleanExpression usernameContains(String usernameContains) {
+        return hasText(usernameContains) ? member.username.contains(usernameContains) : null;
+    }
+    private BooleanExpression usernameStartsWith(String usernameStartsWith) {
+        return hasText(usernameStartsWith) ? member.username.startsWith(usernameStartsWith) : null;
+    }
     private BooleanExpression teamNameEq(String teamName) {
         return isEmpty(teamName) ? null : team.name.eq(teamName);
     }
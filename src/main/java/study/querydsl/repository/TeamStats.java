@@ -0,0 +1,414 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.Dto.TeamStatsDto;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 팀별 회원 수, 나이 합/평균/최소/최대를 메모리에 들고 회원 쓰기 때마다 증분으로 고친다. (querydsl.team-stats.enabled, 기본 false)
+ * 켜면 애플리케이션 시작 후 별도 스레드가 member 테이블 전체를 한 번 읽으므로, 회원이 많으면 시작 직후 DB 부하와 메모리를 감안해서 켠다.
+ * <p>
+ * 회원 id → (팀 id, 나이) 를 같이 들고 있어서 수정/삭제 이벤트가 오면 이전 값을 빼고 새 값을 더한다.
+ * 최소/최대는 삭제되어도 다시 계산할 수 있도록 나이별 인원수(TreeMap) 로 관리한다.
+ * 커밋된 변경만 반영하도록 트랜잭션 커밋 후에 적용한다.
+ * <p>
+ * 벌크 연산 뒤에는 rebuild-delay 만큼 모아서 별도 스레드가 테이블을 새 구조로 읽고 바꿔 끼운다.
+ * 청크 단위 벌크 update 처럼 BULK 가 연달아 와도 한 번만 읽으며, 다시 읽기 전까지는 isLoaded() 가 false 라
+ * 조회는 막히지 않고 DB 집계로 넘어간다. 읽는 동안 들어온 행 단위 이벤트는 새 구조에 다시 적용한다.
+ * <p>
+ * 회원 한 명당 (id, 팀 id, 나이) 를 오픈 어드레싱 배열(long, long, int)에 둔다. 적재율 1/2 이하라 약 40 B/행,
+ * 회원 100만 명이면 40 MB 정도다.
+ * <p>
+ * 같은 회원을 동시에 수정한 두 트랜잭션의 이벤트가 커밋 순서와 다르게 도착하면 옛 값이 남을 수 있다.
+ * 이때는 rebuild() 로 다시 맞춘다.
+ */
+@Slf4j
+@Component
+public class TeamStats {
+
+    private static final String LOAD_TEAMS_SQL = "select id, name from team";
+    private static final String LOAD_MEMBERS_SQL = "select member_id, team_id, age from member";
+    private static final long NO_TEAM = Long.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration rebuildDelay;
+    private final ScheduledExecutorService rebuilder;
+    private final AtomicLong bulkVersion = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final Object lock = new Object();
+
+    // 아래는 lock 으로 보호
+    private Stats stats;
+    private boolean loaded;
+    /**
+     * 테이블을 읽는 동안 들어온 이벤트. 새 구조로 바꿔 끼우기 전에 다시 적용한다.
+     */
+    private List<Consumer<Stats>> journal;
+
+    public TeamStats(JdbcTemplate jdbcTemplate,
+                     @Value("${querydsl.team-stats.enabled:false}") boolean enabled,
+                     @Value("${querydsl.team-stats.rebuild-delay:1s}") Duration rebuildDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.rebuildDelay = rebuildDelay;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "team-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isLoaded() {
+        synchronized (lock) {
+            return loaded;
+        }
+    }
+
+    /**
+     * groupBy(team.name) 과 같은 결과. 팀이 있는 회원만 팀 이름순으로 집계한다.
+     */
+    public List<TeamStatsDto> findAll() {
+        Map<String, AgeStats> byName = new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        synchronized (lock) {
+            if (stats == null) {
+                return new ArrayList<>();
+            }
+            stats.byTeam.forEach((teamId, ages) -> {
+                if (ages.count > 0) {
+                    byName.computeIfAbsent(stats.teamNames.get(teamId), name -> new AgeStats()).addAll(ages);
+                }
+            });
+        }
+        List<TeamStatsDto> result = new ArrayList<>(byName.size());
+        byName.forEach((name, ages) -> result.add(ages.toDto(name)));
+        return result;
+    }
+
+    public Optional<TeamStatsDto> findByTeamName(String teamName) {
+        AgeStats merged = new AgeStats();
+        synchronized (lock) {
+            if (stats == null) {
+                return Optional.empty();
+            }
+            stats.byTeam.forEach((teamId, ages) -> {
+                if (Objects.equals(stats.teamNames.get(teamId), teamName)) {
+                    merged.addAll(ages);
+                }
+            });
+        }
+        return merged.count > 0 ? Optional.of(merged.toDto(teamName)) : Optional.empty();
+    }
+
+    /**
+     * 팀이 없는 회원까지 포함한 전체 집계
+     */
+    public TeamStatsDto overall() {
+        synchronized (lock) {
+            return stats == null ? new AgeStats().toDto(null) : stats.overall.toDto(null);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            rebuildScheduled.set(true);
+            rebuilder.execute(this::runScheduledRebuild);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEntityChanged(EntityChangedEvent event) {
+        boolean memberChanged = Member.class.isAssignableFrom(event.getEntityType());
+        boolean teamChanged = Team.class.isAssignableFrom(event.getEntityType());
+        if (!enabled || !(memberChanged || teamChanged)) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            bulkVersion.incrementAndGet();
+            synchronized (lock) {
+                loaded = false;
+            }
+            scheduleRebuild();
+        } else if (memberChanged) {
+            Member member = (Member) event.getEntity();
+            if (member.getId() != null) {
+                long memberId = member.getId();
+                boolean removed = event.getType() == EntityChangedEvent.Type.REMOVE;
+                long teamId = member.getTeam() == null ? NO_TEAM : member.getTeam().getId();
+                int age = member.getAge();
+                apply(target -> target.applyMember(memberId, removed, teamId, age));
+            }
+        } else {
+            Team team = (Team) event.getEntity();
+            if (team.getId() != null) {
+                long teamId = team.getId();
+                String name = event.getType() == EntityChangedEvent.Type.REMOVE ? null : team.getName();
+                apply(target -> target.applyTeam(teamId, name));
+            }
+        }
+    }
+
+    /**
+     * 테이블에서 새 구조로 통째로 다시 집계해 바꿔 끼운다. 읽는 동안 조회는 기존 구조로 답하고,
+     * 들어온 이벤트는 바꿔 끼우기 전에 새 구조에 적용한다. 읽는 동안 BULK 가 또 오면 한 번 더 예약한다.
+     */
+    public synchronized void rebuild() {
+        long version = bulkVersion.get();
+        long started = System.nanoTime();
+        synchronized (lock) {
+            journal = new ArrayList<>();
+        }
+        Stats fresh = new Stats();
+        try {
+            jdbcTemplate.query(LOAD_TEAMS_SQL, rs -> {
+                fresh.teamNames.put(rs.getLong(1), rs.getString(2));
+            });
+            jdbcTemplate.query(LOAD_MEMBERS_SQL, rs -> {
+                long teamId = rs.getLong(2);
+                fresh.add(rs.getLong(1), rs.wasNull() ? NO_TEAM : teamId, rs.getInt(3));
+            });
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                journal = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            journal.forEach(change -> change.accept(fresh));
+            journal = null;
+            stats = fresh;
+            loaded = version == bulkVersion.get();
+        }
+        if (version != bulkVersion.get()) {
+            scheduleRebuild();
+        }
+        log.info("team stats built: {} teams, {} members in {}ms", fresh.teamNames.size(), fresh.members.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void apply(Consumer<Stats> change) {
+        synchronized (lock) {
+            if (journal != null) {
+                journal.add(change);
+            }
+            if (stats != null) {
+                change.accept(stats);
+            }
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::runScheduledRebuild, rebuildDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runScheduledRebuild() {
+        rebuildScheduled.set(false);
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("team stats rebuild failed, dashboard reads fall back to the database", e);
+        }
+    }
+
+    /**
+     * 한 번 읽은 집계 전체. rebuild 는 새 Stats 를 만들어 통째로 바꾼다.
+     */
+    private static final class Stats {
+        final Map<Long, String> teamNames = new HashMap<>();
+        final MemberRows members = new MemberRows();
+        final Map<Long, AgeStats> byTeam = new HashMap<>();
+        final AgeStats overall = new AgeStats();
+
+        void applyMember(long memberId, boolean removed, long teamId, int age) {
+            int slot = members.find(memberId);
+            if (slot >= 0) {
+                subtract(members.teamIds[slot], members.ages[slot]);
+                members.removeAt(slot);
+            }
+            if (!removed) {
+                add(memberId, teamId, age);
+            }
+        }
+
+        void applyTeam(long teamId, String name) {
+            if (name == null) {
+                teamNames.remove(teamId);
+            } else {
+                teamNames.put(teamId, name);
+            }
+        }
+
+        void add(long memberId, long teamId, int age) {
+            members.put(memberId, teamId, age);
+            overall.add(age);
+            if (teamId != NO_TEAM) {
+                byTeam.computeIfAbsent(teamId, key -> new AgeStats()).add(age);
+            }
+        }
+
+        private void subtract(long teamId, int age) {
+            overall.remove(age);
+            if (teamId != NO_TEAM) {
+                AgeStats ages = byTeam.get(teamId);
+                ages.remove(age);
+                if (ages.count == 0) {
+                    byTeam.remove(teamId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 회원 id → (팀 id, 나이). 선형 탐사 오픈 어드레싱이고 삭제는 뒤 칸을 당겨 메운다.
+     */
+    private static final class MemberRows {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        long[] keys = newKeys(16);
+        long[] teamIds = new long[16];
+        int[] ages = new int[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int find(long memberId) {
+            int mask = keys.length - 1;
+            for (int slot = slot(memberId, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == memberId) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void put(long memberId, long teamId, int age) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = slot(memberId, mask);
+            while (keys[slot] != EMPTY && keys[slot] != memberId) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = memberId;
+            teamIds[slot] = teamId;
+            ages[slot] = age;
+        }
+
+        void removeAt(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = slot(keys[next], mask);
+                // home 이 (hole, next] 구간 밖이면 hole 로 당겨도 탐색 경로가 끊기지 않는다
+                boolean between = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (!between) {
+                    keys[hole] = keys[next];
+                    teamIds[hole] = teamIds[next];
+                    ages[hole] = ages[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = EMPTY;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldTeamIds = teamIds;
+            int[] oldAges = ages;
+            keys = newKeys(capacity);
+            teamIds = new long[capacity];
+            ages = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldTeamIds[i], oldAges[i]);
+                }
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int slot(long memberId, int mask) {
+            long hash = memberId * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+    private static final class AgeStats {
+        long count;
+        long sum;
+        final TreeMap<Integer, Integer> countByAge = new TreeMap<>();
+
+        void add(int age) {
+            count++;
+            sum += age;
+            countByAge.merge(age, 1, Integer::sum);
+        }
+
+        void remove(int age) {
+            count--;
+            sum -= age;
+            countByAge.computeIfPresent(age, (key, n) -> n == 1 ? null : n - 1);
+        }
+
+        void addAll(AgeStats other) {
+            count += other.count;
+            sum += other.sum;
+            other.countByAge.forEach((age, n) -> countByAge.merge(age, n, Integer::sum));
+        }
+
+        TeamStatsDto toDto(String teamName) {
+            if (count == 0) {
+                return new TeamStatsDto(teamName, 0, null, null, null, null);
+            }
+            return new TeamStatsDto(teamName, count, sum, (double) sum / count,
+                    countByAge.firstKey(), countByAge.lastKey());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.Dto.TeamStatsDto;
+import study.querydsl.support.Transactions;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 대시보드용 나이 집계. TeamStats 가 준비되어 있으면 메모리에서 답하고,
+ * 아직 읽지 못했거나 쓰기 트랜잭션 안이면(커밋 전 변경을 봐야 하므로) member 테이블을 집계한다.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class TeamStatsRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final TeamStats teamStats;
+
+    public TeamStatsRepository(JPAQueryFactory queryFactory, TeamStats teamStats) {
+        this.queryFactory = queryFactory;
+        this.teamStats = teamStats;
+    }
+
+    /**
+     * select team.name, count, sum, avg, min, max ... group by team.name order by team.name
+     */
+    public List<TeamStatsDto> findAll() {
+        if (useTeamStats()) {
+            return teamStats.findAll();
+        }
+        return queryFactory
+                .select(team.name, member.count(), member.age.sum(), member.age.avg(), member.age.min(), member.age.max())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch().stream()
+                .map(tuple -> toDto(tuple.get(team.name), tuple, 1))
+                .collect(Collectors.toList());
+    }
+
+    public Optional<TeamStatsDto> findByTeamName(String teamName) {
+        if (useTeamStats()) {
+            return teamStats.findByTeamName(teamName);
+        }
+        Tuple tuple = queryFactory
+                .select(member.count(), member.age.sum(), member.age.avg(), member.age.min(), member.age.max())
+                .from(member)
+                .join(member.team, team)
+                .where(team.name.eq(teamName))
+                .fetchOne();
+        TeamStatsDto stats = toDto(teamName, tuple, 0);
+        return stats.getCount() > 0 ? Optional.of(stats) : Optional.empty();
+    }
+
+    /**
+     * 전체 회원 집계. 평균 이상/최대 나이 서브쿼리 대신 쓴다.
+     */
+    public TeamStatsDto overall() {
+        if (useTeamStats()) {
+            return teamStats.overall();
+        }
+        Tuple tuple = queryFactory
+                .select(member.count(), member.age.sum(), member.age.avg(), member.age.min(), member.age.max())
+                .from(member)
+                .fetchOne();
+        return toDto(null, tuple, 0);
+    }
+
+    private boolean useTeamStats() {
+        return teamStats.isLoaded() && !Transactions.inWritableTransaction();
+    }
+
+    /**
+     * offset 번째부터 count, sum, avg, min, max. sum 은 JPA 가 Long 으로 돌려주므로 Number 로 받는다.
+     */
+    private static TeamStatsDto toDto(String teamName, Tuple tuple, int offset) {
+        long count = tuple.get(offset, Long.class);
+        if (count == 0) {
+            return new TeamStatsDto(teamName, 0, null, null, null, null);
+        }
+        return new TeamStatsDto(
+                teamName,
+                count,
+                tuple.get(offset + 1, Number.class).longValue(),
+                tuple.get(offset + 2, Double.class),
+                tuple.get(offset + 3, Integer.class),
+                tuple.get(offset + 4, Integer.class));
+    }
+}
@@ -0,0 +1,175 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.support.ScalableBloomFilter;
+import study.querydsl.support.Transactions;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * username 존재 여부 Bloom filter. "확실히 없음" 이면 findByUsername 이 DB 에 가지 않고 빈 목록을 돌려준다.
+ * <p>
+ * 시작할 때 member 테이블에서 만들고, 회원이 저장/수정될 때(커밋 전, 엔티티 리스너 시점) username 을 추가한다.
+ * 삭제나 이름 변경으로 없어진 username 은 빼지 않는다. 오탐만 늘 뿐 틀린 "없음" 은 생기지 않는다.
+ * username 을 썼을 수 있는 벌크 연산(username 을 set 한 update, JDBC insert 등) 뒤에는 테이블의 username 을 전부 다시 더한다.
+ * <p>
+ * 시퀀스 id 라 insert 와 @PostPersist 는 flush 때까지 미뤄진다. 그래서 쓰기 트랜잭션 안에서는 필터를 보기 전에
+ * flush 한다. (쿼리를 실행했다면 auto flush 가 하는 일과 같다) flush 로 리스너가 돌면서 username 이 필터에 들어간다.
+ * <p>
+ * 메트릭: querydsl.username.bloom.fpp(추정 오탐률), querydsl.username.bloom.memory(바이트),
+ * querydsl.username.bloom.lookups{result=negative|positive|false_positive}
+ */
+@Slf4j
+@Component
+public class UsernameBloomFilter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager em;
+    private final boolean enabled;
+    private final long initialCapacity;
+    private final double fpp;
+    private final Counter negatives;
+    private final Counter positives;
+    private final Counter falsePositives;
+
+    private volatile ScalableBloomFilter filter;
+    private volatile ScalableBloomFilter rebuilding;
+
+    public UsernameBloomFilter(JdbcTemplate jdbcTemplate, EntityManager em, MeterRegistry registry,
+                               @Value("${querydsl.username-bloom.enabled:true}") boolean enabled,
+                               @Value("${querydsl.username-bloom.initial-capacity:1000000}") long initialCapacity,
+                               @Value("${querydsl.username-bloom.fpp:0.01}") double fpp) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.em = em;
+        this.enabled = enabled;
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.negatives = lookups(registry, "negative");
+        this.positives = lookups(registry, "positive");
+        this.falsePositives = lookups(registry, "false_positive");
+        Gauge.builder("querydsl.username.bloom.fpp", this, bloom -> bloom.filter == null ? 1 : bloom.filter.expectedFpp())
+                .register(registry);
+        Gauge.builder("querydsl.username.bloom.memory", this, bloom -> bloom.filter == null ? 0 : bloom.filter.bitSize() / 8.0)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("querydsl.username.bloom.lookups").tag("result", result).register(registry);
+    }
+
+    /**
+     * 필터가 "없음" 이라고 하면 빈 목록, 아니면 loader 결과. 필터가 아직 없으면 항상 loader 를 부른다.
+     */
+    public List<Member> findByUsername(String username, Supplier<List<Member>> loader) {
+        ScalableBloomFilter current = filter;
+        if (current == null || username == null) {
+            return loader.get();
+        }
+        if (Transactions.inWritableTransaction()) {
+            em.flush();
+        }
+        if (!current.mightContain(username)) {
+            negatives.increment();
+            return Collections.emptyList();
+        }
+        List<Member> result = loader.get();
+        if (result.isEmpty()) {
+            falsePositives.increment();
+        } else {
+            positives.increment();
+        }
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!Member.class.isAssignableFrom(event.getEntityType())) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            if (event.mayHaveWritten("username")) {
+                addAllFromTable();
+            }
+            return;
+        }
+        if (event.getType() != EntityChangedEvent.Type.REMOVE) {
+            put(((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    /**
+     * 벌크 연산으로 들어간 username 은 알 수 없으므로 테이블 전체를 현재 필터에 더한다.
+     * 새로 만들어 교체하면 아직 커밋되지 않은 다른 트랜잭션의 username 을 놓칠 수 있어 합치기만 한다.
+     */
+    public void addAllFromTable() {
+        ScalableBloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        jdbcTemplate.query("select username from member", rs -> {
+            String username = rs.getString(1);
+            if (username != null) {
+                current.put(username);
+            }
+        });
+    }
+
+    /**
+     * 테이블에서 새로 만들어 교체한다. 지워진 username 이 빠지므로 오탐률이 다시 내려간다.
+     * 만드는 동안 들어온 username 은 새 필터에도 넣지만, 시작 전에 추가되고 아직 커밋되지 않은 username 은
+     * 빠질 수 있으므로 쓰기가 없는 시점(시작 시)에 부른다.
+     */
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        ScalableBloomFilter building = new ScalableBloomFilter(initialCapacity, fpp);
+        rebuilding = building;
+        try {
+            jdbcTemplate.query("select username from member", rs -> {
+                String username = rs.getString(1);
+                if (username != null) {
+                    building.put(username);
+                }
+            });
+            filter = building;
+        } finally {
+            rebuilding = null;
+        }
+        log.info("username bloom filter built: {} names, {} KiB in {}ms", building.approximateCount(),
+                building.bitSize() / 8 / 1024, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void put(String username) {
+        if (username == null) {
+            return;
+        }
+        ScalableBloomFilter building = rebuilding;
+        if (building != null) {
+            building.put(username);
+        }
+        ScalableBloomFilter current = filter;
+        if (current != null) {
+            current.put(username);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package study.querydsl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 부하 테스트용 대량 데이터 생성기. JPA 를 거치지 않고 JDBC batch insert 를 workers 개 스레드로 나눠 넣는다.
+ * <ul>
+ *     <li>팀 크기: 순위 k 인 팀이 1/k^teamSkew 에 비례하는 Zipf 분포 (0 이면 균등)</li>
+ *     <li>나이: 평균 ageMean, 표준편차 ageStddev 인 정규분포를 [ageMin, ageMax] 로 자른 값</li>
+ *     <li>username: usernameCardinality 가 0 이면 전부 다르고, 아니면 그 개수만큼만 서로 다른 이름이 나온다</li>
+ * </ul>
+ * id 는 시퀀스에서 범위를 먼저 잡아 두고 넣는다. pooled-lo 옵티마이저는 시퀀스에서 받은 값부터 50개를 메모리에 들고 쓰므로
+ * max(id) + 1 부터 넣으면 하이버네이트가 들고 있던 id 와 겹칠 수 있다. 시퀀스의 다음 값 이상에서 시작하고
+ * 넣기 전에 시퀀스를 범위 뒤로 옮겨 두면 이미 받은 블록과도, 생성 중에 새로 받는 블록과도 겹치지 않는다.
+ * <p>
+ * JDBC 로 넣으므로 하이버네이트 2차 캐시/쿼리 캐시는 끝난 뒤 전부 비우고, BULK 이벤트로 애플리케이션 캐시를 비운다.
+ */
+@Slf4j
+@Service
+public class MemberDataGenerator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final EntityManagerFactory emf;
+    private final int teams;
+    private final long members;
+    private final int workers;
+    private final int batchSize;
+    private final double teamSkew;
+    private final int ageMin;
+    private final int ageMax;
+    private final double ageMean;
+    private final double ageStddev;
+    private final long usernameCardinality;
+    private final long seed;
+
+    public MemberDataGenerator(JdbcTemplate jdbcTemplate, ApplicationEventPublisher publisher, EntityManagerFactory emf,
+                               @Value("${querydsl.generator.teams:100}") int teams,
+                               @Value("${querydsl.generator.members:1000000}") long members,
+                               @Value("${querydsl.generator.workers:4}") int workers,
+                               @Value("${querydsl.generator.batch-size:1000}") int batchSize,
+                               @Value("${querydsl.generator.team-skew:1.0}") double teamSkew,
+                               @Value("${querydsl.generator.age-min:1}") int ageMin,
+                               @Value("${querydsl.generator.age-max:90}") int ageMax,
+                               @Value("${querydsl.generator.age-mean:35}") double ageMean,
+                               @Value("${querydsl.generator.age-stddev:12}") double ageStddev,
+                               @Value("${querydsl.generator.username-cardinality:0}") long usernameCardinality,
+                               @Value("${querydsl.generator.seed:42}") long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.publisher = publisher;
+        this.emf = emf;
+        this.teams = teams;
+        this.members = members;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.teamSkew = teamSkew;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+        this.ageMean = ageMean;
+        this.ageStddev = ageStddev;
+        this.usernameCardinality = usernameCardinality;
+        this.seed = seed;
+    }
+
+    /**
+     * @return 새로 넣은 회원 id 범위 [from, to]
+     */
+    public long[] generate() {
+        long started = System.nanoTime();
+        long[] teamIds = insertTeams();
+        double[] teamCdf = teamCdf();
+
+        long firstMemberId = reserveIds("member_seq", "member", "member_id", members);
+        long lastMemberId = firstMemberId + members - 1;
+        AtomicLong inserted = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long perWorker = (members + workers - 1) / workers;
+            for (int worker = 0; worker < workers; worker++) {
+                long from = firstMemberId + worker * perWorker;
+                long to = Math.min(lastMemberId, from + perWorker - 1);
+                if (from > to) {
+                    break;
+                }
+                Random random = new Random(seed + worker);
+                futures.add(executor.submit(() -> insertMembers(from, to, teamIds, teamCdf, random, inserted)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Member generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Member generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        emf.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        publisher.publishEvent(EntityChangedEvent.bulk(Team.class));
+        publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        log.info("generated {} teams, {} members in {}ms ({} rows/s)",
+                teams, inserted.get(), elapsedMillis, inserted.get() * 1000 / elapsedMillis);
+        return new long[]{firstMemberId, lastMemberId};
+    }
+
+    private long[] insertTeams() {
+        long firstTeamId = reserveIds("team_seq", "team", "id", teams);
+        List<Object[]> rows = new ArrayList<>(teams);
+        long[] teamIds = new long[teams];
+        for (int i = 0; i < teams; i++) {
+            teamIds[i] = firstTeamId + i;
+            rows.add(new Object[]{teamIds[i], "loadTeam" + teamIds[i]});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", rows);
+        return teamIds;
+    }
+
+    private void insertMembers(long from, long to, long[] teamIds, double[] teamCdf, Random random,
+                               AtomicLong inserted) {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (long id = from; id <= to; id++) {
+            batch.add(new Object[]{id, username(id), age(random), teamIds[team(teamCdf, random)]});
+            if (batch.size() == batchSize) {
+                flush(batch, inserted);
+            }
+        }
+        flush(batch, inserted);
+    }
+
+    private void flush(List<Object[]> batch, AtomicLong inserted) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", batch);
+        long total = inserted.addAndGet(batch.size());
+        if (total / 100_000 != (total - batch.size()) / 100_000) {
+            log.info("generated {}/{} members", total, members);
+        }
+        batch.clear();
+    }
+
+    /**
+     * 순위 k(1부터) 인 팀의 가중치 1/k^teamSkew 의 누적 분포
+     */
+    private double[] teamCdf() {
+        double[] cdf = new double[teams];
+        double sum = 0;
+        for (int k = 0; k < teams; k++) {
+            sum += 1 / Math.pow(k + 1, teamSkew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < teams; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int team(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private int age(Random random) {
+        long age = Math.round(ageMean + random.nextGaussian() * ageStddev);
+        return (int) Math.max(ageMin, Math.min(ageMax, age));
+    }
+
+    private String username(long id) {
+        return "member" + (usernameCardinality > 0 ? id % usernameCardinality : id);
+    }
+
+    /**
+     * count 개의 연속된 id 를 잡는다. 시퀀스의 다음 값과 max(id) + 1 중 큰 값에서 시작하고,
+     * 시퀀스는 바로 범위 다음으로 옮긴다. (다음 값을 읽고 옮기는 사이에 다른 스레드가 받은 블록은 막지 못하므로 쓰기가 없을 때 실행한다)
+     *
+     * @return 범위의 첫 id
+     */
+    private long reserveIds(String sequence, String table, String idColumn, long count) {
+        Long next = jdbcTemplate.queryForObject("select next value for " + sequence, Long.class);
+        Long max = jdbcTemplate.queryForObject("select max(" + idColumn + ") from " + table, Long.class);
+        long first = Math.max(next, max == null ? 1 : max + 1);
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (first + count));
+        return first;
+    }
+}
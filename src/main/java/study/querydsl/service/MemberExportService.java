@@ -0,0 +1,114 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 회원 전체 내보내기. 결과를 메모리에 모으지 않고 읽는 대로 출력 스트림에 쓴다.
+ */
+@Service
+public class MemberExportService {
+
+    public enum Format {
+        CSV("text/csv"),
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private static final String CSV_HEADER = "memberId,username,age,teamId,teamName";
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final int flushInterval;
+
+    public MemberExportService(MemberJpaRepository memberJpaRepository,
+                               ObjectMapper objectMapper,
+                               @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                               @Value("${querydsl.export.flush-interval:1000}") int flushInterval) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * DTO 프로젝션이라 영속성 컨텍스트에 쌓이는 엔티티가 없고, flushInterval 건마다 출력을 내보내므로
+     * 건수와 상관없이 메모리 사용량이 일정하다.
+     *
+     * @return 내보낸 건수
+     */
+    @Transactional(readOnly = true)
+    public long export(MemberSearchCondition condition, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long count = 0;
+        try (Stream<MemberTeamDto> rows = memberJpaRepository.streamSearch(condition, fetchSize)) {
+            Iterator<MemberTeamDto> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                MemberTeamDto row = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsv(writer, row);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                if (++count % flushInterval == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeCsv(Writer writer, MemberTeamDto row) throws IOException {
+        writer.write(String.valueOf(row.getMemberId()));
+        writer.write(',');
+        writer.write(csv(row.getUsername()));
+        writer.write(',');
+        writer.write(String.valueOf(row.getAge()));
+        writer.write(',');
+        writer.write(row.getTeamId() == null ? "" : String.valueOf(row.getTeamId()));
+        writer.write(',');
+        writer.write(csv(row.getTeamName()));
+        writer.write('\n');
+    }
+
+    private String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
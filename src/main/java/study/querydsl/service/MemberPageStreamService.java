@@ -0,0 +1,144 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 검색 페이지를 간단한 JSON 으로 응답 스트림에 쓴다. Page 를 Jackson 이 빈 프로퍼티로 직렬화하는 대신
+ * 필요한 필드만 JsonGenerator 로 바로 쓴다.
+ * <pre>
+ * {"content":[{"memberId":1,"username":"member1","age":10,"teamId":1,"teamName":"teamA"},...],
+ *  "page":0,"size":20,"numberOfElements":20,"totalElements":100,"totalPages":5}
+ * </pre>
+ * 조회({@link #readPage})와 쓰기({@link #write})를 나눈다. 행과 전체 건수는 짧은 읽기 전용 트랜잭션에서 모두 읽고
+ * 커넥션을 돌려준 뒤에 소켓에 쓴다. 느린 클라이언트가 커넥션을 붙잡지 않고, 조회가 실패하면 응답을 쓰기 전이라
+ * 잘린 200 대신 일반 오류 응답이 나간다. 그래서 커서에서 읽는 대로 내보내지는 않는다. 한 페이지는 메모리에 올라가며
+ * 페이지 크기는 spring.data.web.pageable.max-page-size 로 제한된다.
+ * 전체 건수는 첫 페이지가 꽉 차지 않았거나 마지막 페이지면 count 쿼리 없이 계산한다.
+ */
+@Service
+public class MemberPageStreamService {
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean gzip;
+
+    public MemberPageStreamService(MemberRepository memberRepository,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${querydsl.page-stream.gzip:true}") boolean gzip) {
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.gzip = gzip;
+    }
+
+    /**
+     * gzip 이 켜져 있고 클라이언트의 Accept-Encoding 이 gzip(또는 x-gzip, *)을 q > 0 으로 받으면 true.
+     * gzip 을 직접 적은 항목이 * 보다 우선한다.
+     */
+    public boolean useGzip(String acceptEncoding) {
+        if (!gzip || acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parts) > 0;
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return accepted;
+            }
+            if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.length() > 2 && param.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 읽기 전용 트랜잭션에서 페이지 행과 전체 건수를 읽는다. 반환 시점엔 커넥션이 이미 반납돼 있다.
+     */
+    public Page<MemberTeamDto> readPage(MemberSearchCondition condition, Pageable pageable) {
+        return readOnlyTx.execute(status -> {
+            List<MemberTeamDto> content = memberRepository.searchContent(condition, pageable);
+            return PageableExecutionUtils.getPage(content, pageable, () -> memberRepository.countBySearch(condition));
+        });
+    }
+
+    /**
+     * 트랜잭션 밖에서 쓴다.
+     */
+    public void write(Page<MemberTeamDto> page, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        json.writeStartObject();
+        json.writeArrayFieldStart("content");
+        for (MemberTeamDto row : page.getContent()) {
+            writeRow(json, row);
+        }
+        json.writeEndArray();
+
+        json.writeNumberField("page", page.getNumber());
+        json.writeNumberField("size", page.getSize());
+        json.writeNumberField("numberOfElements", page.getNumberOfElements());
+        json.writeNumberField("totalElements", page.getTotalElements());
+        json.writeNumberField("totalPages", page.getTotalPages());
+        json.writeEndObject();
+        json.flush();
+    }
+
+    /**
+     * @return 쓴 건수
+     */
+    public int writePage(MemberSearchCondition condition, Pageable pageable, OutputStream out) throws IOException {
+        Page<MemberTeamDto> page = readPage(condition, pageable);
+        write(page, out);
+        return page.getNumberOfElements();
+    }
+
+    private void writeRow(JsonGenerator json, MemberTeamDto row) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("memberId", row.getMemberId());
+        json.writeStringField("username", row.getUsername());
+        json.writeNumberField("age", row.getAge());
+        if (row.getTeamId() == null) {
+            json.writeNullField("teamId");
+        } else {
+            json.writeNumberField("teamId", row.getTeamId());
+        }
+        json.writeStringField("teamName", row.getTeamName());
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 검색을 memberSearchTaskExecutor 에서 실행해 요청(Tomcat) 스레드가 JDBC 응답을 기다리지 않게 한다.
+ * 풀과 큐가 모두 차 있으면 제출 시점에 TaskRejectedException 이 그대로 올라간다.
+ */
+@Service
+public class MemberSearchAsyncService {
+
+    private final Executor executor;
+    private final MemberSearchService memberSearchService;
+
+    public MemberSearchAsyncService(@Qualifier("memberSearchTaskExecutor") Executor executor,
+                                    MemberSearchService memberSearchService) {
+        this.executor = executor;
+        this.memberSearchService = memberSearchService;
+    }
+
+    public CompletableFuture<List<MemberTeamDto>> search(MemberSearchCondition condition) {
+        return CompletableFuture.supplyAsync(() -> memberSearchService.search(condition), executor);
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return CompletableFuture.supplyAsync(() -> memberSearchService.searchPageSimple(condition, pageable), executor);
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                                    boolean concurrentCount) {
+        return CompletableFuture.supplyAsync(
+                () -> memberSearchService.searchPageComplex(condition, pageable, concurrentCount), executor);
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchIndex;
+import study.querydsl.support.CountQueryExecutor;
+import study.querydsl.support.SingleFlight;
+import study.querydsl.support.Transactions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * /v1~/v3 검색(동기, 비동기)이 거치는 서비스. 트랜잭션을 열지 않는다.
+ * 메모리 인덱스가 켜져 있고 최신이면 거기서 답하고, 아니면 리포지토리(결과 캐시 → DB)로 간다.
+ * <p>
+ * 같은 조건/페이지로 동시에 들어온 페이지 검색은 리포지토리 호출 한 번의 결과를 같이 받는다.
+ * 리포지토리 트랜잭션(과 커넥션)은 먼저 온 호출만 열고, 나머지는 트랜잭션 없이 기다린다.
+ * 쓰기 트랜잭션 안에서는 커밋 전 데이터를 보므로 공유하지 않는다.
+ * <p>
+ * searchPageComplex 의 concurrentCount 는 content 와 count 를 각자 트랜잭션으로 동시에 읽는다.
+ * 이 서비스는 트랜잭션 밖이므로 요청이 자기 커넥션을 쥔 채 count 를 기다리지 않는다. ({@link CountQueryExecutor})
+ */
+@Service
+@RequiredArgsConstructor
+public class MemberSearchService {
+
+    private final MemberSearchIndex memberSearchIndex;
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final CountQueryExecutor countQueryExecutor;
+    private final SingleFlight<List<Object>, Page<MemberTeamDto>> pageSearches = new SingleFlight<>();
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return memberSearchIndex.search(condition)
+                .orElseGet(() -> memberJpaRepository.search(condition));
+    }
+
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition normalized = condition.normalize();
+        return memberSearchIndex.searchPage(normalized, pageable)
+                .orElseGet(() -> coalesce(Arrays.asList("searchPageSimple", normalized, pageable),
+                        () -> memberRepository.searchPageSimple(normalized, pageable)));
+    }
+
+    /**
+     * concurrentCount 는 실행 방법만 바꾸고 결과는 같으므로 합치는 키에 넣지 않는다.
+     */
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                 boolean concurrentCount) {
+        MemberSearchCondition normalized = condition.normalize();
+        return memberSearchIndex.searchPage(normalized, pageable)
+                .orElseGet(() -> coalesce(Arrays.asList("searchPageComplex", normalized, pageable),
+                        () -> countQueryExecutor.getPage(pageable,
+                                () -> memberRepository.searchContent(normalized, pageable),
+                                () -> memberRepository.countBySearch(normalized),
+                                concurrentCount)));
+    }
+
+    private Page<MemberTeamDto> coalesce(List<Object> key, Supplier<Page<MemberTeamDto>> search) {
+        if (Transactions.inWritableTransaction()) {
+            return search.get();
+        }
+        return pageSearches.execute(key, search);
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.support;
+
+/**
+ * 청크 단위 벌크 연산의 진행 상황. 청크 하나가 커밋될 때마다 호출된다.
+ */
+@FunctionalInterface
+public interface BulkProgressListener {
+
+    BulkProgressListener NONE = (chunk, lastId, affected, totalAffected) -> {
+    };
+
+    /**
+     * @param chunk         1부터 시작하는 청크 번호
+     * @param lastId        이번 청크가 처리한 id 범위의 끝 (포함)
+     * @param affected      이번 청크에서 변경된 행 수
+     * @param totalAffected 지금까지 변경된 행 수
+     */
+    void onChunk(int chunk, long lastId, long affected, long totalAffected);
+}
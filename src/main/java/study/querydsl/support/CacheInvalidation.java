@@ -0,0 +1,56 @@
+package study.querydsl.support;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 캐시 세대 번호. 로딩을 시작할 때 받은 Ticket 으로, 로딩하는 동안 무효화가 있었는지 확인한다.
+ * 무효화 전에 시작한 로딩은 옛 데이터를 읽었을 수 있으므로 그 결과는 캐시에 남기지 않는다.
+ * <pre>
+ * Ticket ticket = invalidation.begin();
+ * V value = load();
+ * cache.put(key, value);
+ * if (!invalidation.isCurrent(ticket)) cache.remove(key, value);
+ * </pre>
+ * put 다음에 확인하므로 확인과 put 사이에 들어온 무효화도 놓치지 않는다.
+ * <p>
+ * 읽기 전용 트랜잭션이 replica 로 가면 커밋 직후의 조회가 아직 복제되지 않은 옛 데이터를 읽을 수 있다.
+ * quietPeriod(허용 복제 지연) 를 주면 무효화 후 그 시간 안에 시작한 로딩도 캐시에 남기지 않는다.
+ */
+public class CacheInvalidation {
+
+    private final long quietMillis;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long invalidatedAt = Long.MIN_VALUE / 2;
+
+    public CacheInvalidation() {
+        this(Duration.ZERO);
+    }
+
+    public CacheInvalidation(Duration quietPeriod) {
+        this.quietMillis = quietPeriod.toMillis();
+    }
+
+    public Ticket begin() {
+        return new Ticket(generation.get(), System.currentTimeMillis());
+    }
+
+    public boolean isCurrent(Ticket ticket) {
+        return generation.get() == ticket.generation && ticket.startedAt - invalidatedAt >= quietMillis;
+    }
+
+    public void invalidate() {
+        invalidatedAt = System.currentTimeMillis();
+        generation.incrementAndGet();
+    }
+
+    public static final class Ticket {
+        private final long generation;
+        private final long startedAt;
+
+        private Ticket(long generation, long startedAt) {
+            this.generation = generation;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.entity.EntityChangedEvent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 같은 조건의 count 결과를 ttl 동안 재사용한다.
+ * 엔티티 쓰기 이벤트가 오면 즉시, 그리고 해당 트랜잭션 커밋 후에 한 번 더 전부 비운다.
+ * (커밋 전에 다른 트랜잭션이 옛 값을 다시 캐싱하는 경우를 막기 위해)
+ * <p>
+ * 쓰기 트랜잭션 안에서는 커밋 전(롤백될 수도 있는) 데이터를 세므로 캐시를 거치지 않는다.
+ * 세는 동안 무효화가 있었으면 그 결과는 캐시에 남기지 않는다. ({@link CacheInvalidation})
+ */
+public class CachedCountStrategy implements CountStrategy {
+
+    private final CountStrategy delegate;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+    private final Map<Object, Entry> cache = new ConcurrentHashMap<>();
+    private final CacheInvalidation invalidation;
+
+    public CachedCountStrategy(CountStrategy delegate, Duration ttl, int maxEntries) {
+        this(delegate, ttl, maxEntries, Duration.ZERO);
+    }
+
+    /**
+     * @param replicaLag 읽기가 replica 로 가면 허용 복제 지연. 무효화 후 이 시간 안에 센 결과는 캐시하지 않는다.
+     */
+    public CachedCountStrategy(CountStrategy delegate, Duration ttl, int maxEntries, Duration replicaLag) {
+        this(delegate, ttl, maxEntries, replicaLag, Clock.systemUTC());
+    }
+
+    CachedCountStrategy(CountStrategy delegate, Duration ttl, int maxEntries, Clock clock) {
+        this(delegate, ttl, maxEntries, Duration.ZERO, clock);
+    }
+
+    CachedCountStrategy(CountStrategy delegate, Duration ttl, int maxEntries, Duration replicaLag, Clock clock) {
+        this.delegate = delegate;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.invalidation = new CacheInvalidation(replicaLag);
+    }
+
+    @Override
+    public long count(Object key, JPAQuery<?> countQuery) {
+        if (Transactions.inWritableTransaction()) {
+            return delegate.count(key, countQuery);
+        }
+        long now = clock.millis();
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.count;
+        }
+        CacheInvalidation.Ticket ticket = invalidation.begin();
+        long count = delegate.count(key, countQuery);
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(e -> e.expiresAt <= now);
+        }
+        if (cache.size() < maxEntries) {
+            Entry loaded = new Entry(count, now + ttlMillis);
+            cache.put(key, loaded);
+            if (!invalidation.isCurrent(ticket)) {
+                cache.remove(key, loaded);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public OptionalLong cached(Object key) {
+        if (Transactions.inWritableTransaction()) {
+            return OptionalLong.empty();
+        }
+        Entry entry = cache.get(key);
+        return entry != null && entry.expiresAt > clock.millis() ? OptionalLong.of(entry.count) : OptionalLong.empty();
+    }
+
+    public void invalidateAll() {
+        invalidation.invalidate();
+        cache.clear();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void afterEntityChangeCommitted(EntityChangedEvent event) {
+        invalidateAll();
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long expiresAt;
+
+        private Entry(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
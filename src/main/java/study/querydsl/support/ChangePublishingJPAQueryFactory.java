@@ -0,0 +1,106 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.springframework.context.ApplicationEventPublisher;
+import study.querydsl.entity.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 벌크 update/delete 는 영속성 컨텍스트와 엔티티 리스너를 거치지 않으므로
+ * 실행 후에 직접 {@link EntityChangedEvent} BULK 이벤트를 발행하는 JPAQueryFactory.
+ */
+public class ChangePublishingJPAQueryFactory extends JPAQueryFactory {
+
+    private final JPQLTemplates templates;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher publisher;
+
+    public ChangePublishingJPAQueryFactory(JPQLTemplates templates, EntityManager entityManager,
+                                           ApplicationEventPublisher publisher) {
+        super(templates, entityManager);
+        this.templates = templates;
+        this.entityManager = entityManager;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new PublishingUpdateClause(path);
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new JPADeleteClause(entityManager, path, templates) {
+            @Override
+            public long execute() {
+                long deleted = super.execute();
+                publisher.publishEvent(EntityChangedEvent.bulk(path.getType(), Collections.emptySet()));
+                return deleted;
+            }
+        };
+    }
+
+    /**
+     * set 한 속성 이름을 모아 두었다가 이벤트에 담는다. (username 을 바꾸지 않는 update 는 username 구독자가 무시할 수 있다)
+     */
+    private class PublishingUpdateClause extends JPAUpdateClause {
+
+        private final EntityPath<?> path;
+        private final Set<String> writtenAttributes = new LinkedHashSet<>();
+
+        PublishingUpdateClause(EntityPath<?> path) {
+            super(entityManager, path, templates);
+            this.path = path;
+        }
+
+        @Override
+        public <T> JPAUpdateClause set(Path<T> path, T value) {
+            writtenAttributes.add(attributeName(path));
+            return super.set(path, value);
+        }
+
+        @Override
+        public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+            writtenAttributes.add(attributeName(path));
+            return super.set(path, expression);
+        }
+
+        @Override
+        public <T> JPAUpdateClause setNull(Path<T> path) {
+            writtenAttributes.add(attributeName(path));
+            return super.setNull(path);
+        }
+
+        @Override
+        public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+            paths.forEach(p -> writtenAttributes.add(attributeName(p)));
+            return super.set(paths, values);
+        }
+
+        @Override
+        public long execute() {
+            long updated = super.execute();
+            publisher.publishEvent(EntityChangedEvent.bulk(path.getType(), writtenAttributes));
+            return updated;
+        }
+
+        private String attributeName(Path<?> attribute) {
+            Path<?> current = attribute;
+            while (current.getMetadata().getParent() != null && !current.getMetadata().getParent().equals(path)) {
+                current = current.getMetadata().getParent();
+            }
+            return current.getMetadata().getName();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package study.querydsl.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.JPQLQueryMixin;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * content 쿼리로부터 count 용 쿼리를 만든다.
+ * <ul>
+ *     <li>projection 은 from 절의 루트 엔티티로 바꾸고 order by, offset/limit 은 버린다.
+ *     distinct 쿼리는 무엇이 중복인지가 projection 에 달려 있으므로 projection 을 그대로 둔다.</li>
+ *     <li>fetch join 은 일반 join 으로 바꾼다.</li>
+ *     <li>where/group by/having, (distinct 이면) projection 과 남은 join 어디에서도 참조하지 않는 to-one 연관관계의 left join 은 제거한다.
+ *     left join 한 to-one 연관관계는 row 수를 바꾸지 않는다.</li>
+ * </ul>
+ */
+public final class CountQueries {
+
+    private CountQueries() {
+    }
+
+    public static JPAQuery<?> derive(EntityManager em, JPQLTemplates templates, JPAQuery<?> contentQuery) {
+        QueryMetadata source = contentQuery.getMetadata();
+        List<JoinExpression> joins = source.getJoins();
+
+        Expression<?> projection = source.isDistinct() && source.getProjection() != null
+                ? source.getProjection()
+                : joins.get(0).getTarget();
+
+        Set<Path<?>> referenced = new HashSet<>();
+        collect(projection, referenced);
+        collect(source.getWhere(), referenced);
+        collect(source.getHaving(), referenced);
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            collect(groupBy, referenced);
+        }
+
+        // 뒤의 join 이 앞의 alias 를 참조할 수 있으므로 뒤에서부터 판단한다
+        boolean[] keep = new boolean[joins.size()];
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (i > 0 && isUnreferencedToOneLeftJoin(join, referenced)) {
+                continue;
+            }
+            keep[i] = true;
+            collect(join.getTarget(), referenced);
+            collect(join.getCondition(), referenced);
+        }
+
+        DefaultQueryMetadata metadata = new DefaultQueryMetadata();
+        for (int i = 0; i < joins.size(); i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            JoinExpression join = joins.get(i);
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!JPQLQueryMixin.FETCH.equals(flag)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+        }
+        if (source.getWhere() != null) {
+            metadata.addWhere(source.getWhere());
+        }
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            metadata.addGroupBy(groupBy);
+        }
+        if (source.getHaving() != null) {
+            metadata.addHaving(source.getHaving());
+        }
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            metadata.setParam((ParamExpression) param.getKey(), param.getValue());
+        }
+        source.getFlags().forEach(metadata::addFlag);
+        metadata.setDistinct(source.isDistinct());
+        metadata.setProjection(projection);
+
+        return new JPAQuery<>(em, templates, metadata);
+    }
+
+    /**
+     * count 용 쿼리를 select count 로 실행한다. deprecated 된 fetchCount 대신 쓴다.
+     * <ul>
+     *     <li>distinct 이고 projection 이 루트 엔티티면 count(distinct 루트)</li>
+     *     <li>group by 가 있거나, distinct 인 projection 이 그 밖의 식이면 행(그룹)을 읽어 센다.
+     *     여러 컬럼(DTO)은 count 로 묶을 수 없고, count(distinct x) 는 null 을 세지 않아
+     *     left join 한 값이나 연관 엔티티가 null 인 행이 빠진다.</li>
+     *     <li>그 밖에는 count(*)</li>
+     * </ul>
+     */
+    public static long count(JPAQuery<?> countQuery) {
+        QueryMetadata metadata = countQuery.getMetadata();
+        Expression<?> projection = metadata.getProjection();
+        boolean distinctRoot = metadata.isDistinct()
+                && (projection == null || projection.equals(metadata.getJoins().get(0).getTarget()));
+        if (!metadata.getGroupBy().isEmpty() || (metadata.isDistinct() && !distinctRoot)) {
+            return countQuery.clone().fetch().size();
+        }
+        JPAQuery<Long> query = countQuery.clone().select(distinctRoot && projection != null
+                ? Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, projection)
+                : Wildcard.count);
+        query.getMetadata().setDistinct(false);
+        Long count = query.fetchOne();
+        return count == null ? 0 : count;
+    }
+
+    private static boolean isUnreferencedToOneLeftJoin(JoinExpression join, Set<Path<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN || !(join.getTarget() instanceof Operation)) {
+            return false;
+        }
+        Operation<?> target = (Operation<?>) join.getTarget();
+        if (target.getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = target.getArg(0);
+        Expression<?> alias = target.getArg(1);
+        return association instanceof Path
+                && !(association instanceof CollectionExpression)
+                && !(association instanceof MapExpression)
+                && !referenced.contains(alias);
+    }
+
+    private static void collect(Expression<?> expr, Set<Path<?>> roots) {
+        if (expr != null) {
+            expr.accept(RootPathCollector.INSTANCE, roots);
+        }
+    }
+
+    /**
+     * 식에 등장하는 모든 경로의 루트(= alias)를 모은다.
+     */
+    private static final class RootPathCollector implements Visitor<Void, Set<Path<?>>> {
+
+        private static final RootPathCollector INSTANCE = new RootPathCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Path<?>> context) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Path<?>> context) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, context);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Path<?>> context) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, context);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Path<?>> context) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Path<?>> context) {
+            context.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Path<?>> context) {
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collect(join.getTarget(), context);
+                collect(join.getCondition(), context);
+            }
+            collect(metadata.getWhere(), context);
+            collect(metadata.getHaving(), context);
+            collect(metadata.getProjection(), context);
+            for (Expression<?> groupBy : metadata.getGroupBy()) {
+                collect(groupBy, context);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Path<?>> context) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    ((Expression<?>) arg).accept(this, context);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.support;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 페이징 조회에서 count 쿼리를 content 쿼리와 동시에 실행한다.
+ * count 는 별도 스레드의 읽기 전용 트랜잭션(= 새 EntityManager, 새 커넥션)에서 돈다.
+ * <p>
+ * 호출한 쪽이 트랜잭션 안이면 순차 실행한다. 쓰기 트랜잭션이면 count 가 커밋 전 변경을 못 보고,
+ * 어떤 트랜잭션이든 자기 커넥션을 쥔 채 두 번째 커넥션을 기다리게 되어, 풀이 요청들로 가득 차면
+ * count 가 커넥션을 못 얻고 요청은 count 를 기다리며 서로 막힌다. 트랜잭션 밖에서 부르면 content 와 count 가
+ * 각자 트랜잭션을 열고 닫으므로 서로를 기다리며 커넥션을 쥐고 있지 않다.
+ * <p>
+ * 동시에 도는 count 는 querydsl.count.max-concurrent(기본 count 풀 크기)개까지다. 그 이상은 큐에서 기다리지 않고
+ * 호출 스레드에서 순차 실행한다. count 가 더 쓰는 커넥션도 이 수를 넘지 않으므로
+ * hikari maximum-pool-size 보다 충분히 작게 둔다.
+ */
+@Component
+public class CountQueryExecutor {
+
+    private final Executor executor;
+    private final TransactionTemplate readOnlyTx;
+    private final Semaphore permits;
+
+    public CountQueryExecutor(@Qualifier("countQueryTaskExecutor") Executor executor,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.count.max-concurrent:${querydsl.count.pool-size:4}}") int maxConcurrent) {
+        this.executor = executor;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public <T> Page<T> getPage(Pageable pageable, Supplier<List<T>> contentQuery, LongSupplier countQuery,
+                               boolean concurrent) {
+        if (!concurrent || TransactionSynchronizationManager.isActualTransactionActive() || !permits.tryAcquire()) {
+            List<T> content = contentQuery.get();
+            return PageableExecutionUtils.getPage(content, pageable, countQuery);
+        }
+
+        CompletableFuture<Long> total = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    // 취소된 count 는 실행하지 않는다
+                    if (!total.isDone()) {
+                        total.complete(readOnlyTx.execute(status -> countQuery.getAsLong()));
+                    }
+                } catch (RuntimeException | Error e) {
+                    total.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            List<T> content = contentQuery.get();
+            return PageableExecutionUtils.getPage(content, pageable, countQuery);
+        }
+        List<T> content;
+        try {
+            content = contentQuery.get();
+        } catch (RuntimeException e) {
+            total.cancel(true);
+            throw e;
+        }
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> join(total));
+        // count 가 필요 없는 페이지(꽉 차지 않은 첫 페이지, 마지막 페이지)면 아직 시작 안 한 count 를 취소한다.
+        // 이미 돌고 있는 count 는 끝까지 돌지만 결과는 버려진다. (permit 은 count 가 끝날 때 돌려준다)
+        total.cancel(false);
+        return page;
+    }
+
+    private long join(CompletableFuture<Long> total) {
+        try {
+            return total.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import java.util.OptionalLong;
+
+/**
+ * 페이징 total count 를 구하는 방법.
+ *
+ * @see CachedCountStrategy
+ */
+public interface CountStrategy {
+
+    /**
+     * @param key        캐시 등에 쓰이는 조회 조건의 식별자. 정규화된 검색 조건을 넘긴다.
+     * @param countQuery where/join 만 채워진 count 용 쿼리
+     */
+    long count(Object key, JPAQuery<?> countQuery);
+
+    /**
+     * count 쿼리를 실행하지 않고 답할 수 있으면(캐시 적중 등) 그 값. 메트릭에서 적중과 실제 쿼리를 나눠 세는 데 쓴다.
+     */
+    default OptionalLong cached(Object key) {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * 매번 정확한 count 쿼리를 실행한다.
+     *
+     * @see CountQueries#count(JPAQuery)
+     */
+    static CountStrategy exact() {
+        return (key, countQuery) -> CountQueries.count(countQuery);
+    }
+
+    /**
+     * 최대 limit 건까지만 센다. 결과가 limit 이면 "limit 건 이상" 이라는 뜻이다.
+     * 전체를 세지 않고 limit 건을 읽는 순간 멈추므로 "N건 이상" 만 보여주는 화면에 적합하다.
+     */
+    static CountStrategy bounded(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Count limit must be positive: " + limit);
+        }
+        return (key, countQuery) -> countQuery.clone()
+                .select(Expressions.ONE)
+                .limit(limit)
+                .fetch()
+                .size();
+    }
+}
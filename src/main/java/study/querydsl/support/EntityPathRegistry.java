@@ -0,0 +1,40 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 도메인 클래스별 Q타입 경로와 Querydsl 헬퍼를 한 번만 만들어 재사용한다.
+ * SimpleEntityPathResolver 의 리플렉션이 리포지토리 수만큼 반복되지 않도록.
+ */
+@Component
+public class EntityPathRegistry {
+
+    private final EntityManager entityManager;
+    private final Map<Class<?>, PathBuilder<?>> pathByDomain = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Querydsl> querydslByDomain = new ConcurrentHashMap<>();
+
+    public EntityPathRegistry(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public Querydsl querydsl(Class<?> domainClass) {
+        return querydslByDomain.computeIfAbsent(domainClass,
+                type -> new Querydsl(entityManager, pathBuilder(type)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> PathBuilder<T> pathBuilder(Class<T> domainClass) {
+        return (PathBuilder<T>) pathByDomain.computeIfAbsent(domainClass, type -> {
+            EntityPath<?> path = SimpleEntityPathResolver.INSTANCE.createPath(type);
+            return new PathBuilder<>(path.getType(), path.getMetadata());
+        });
+    }
+}
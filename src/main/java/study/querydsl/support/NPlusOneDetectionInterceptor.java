@@ -0,0 +1,54 @@
+package study.querydsl.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * 요청 하나에서 같은 SQL 이 threshold 번 이상 실행되면 경고를 남긴다.
+ * 비동기 엔드포인트처럼 요청 스레드 밖에서 실행된 쿼리는 세지 않는다.
+ * 비동기 처리가 시작되면 afterCompletion 없이 요청 스레드가 풀로 돌아가므로 그때 카운터를 정리한다.
+ * (ThreadLocal 이 다음 요청으로 새지 않게) 비동기 결과를 쓰는 재디스패치는 preHandle 부터 다시 센다.
+ */
+@Slf4j
+public class NPlusOneDetectionInterceptor implements AsyncHandlerInterceptor {
+
+    private final int threshold;
+
+    public NPlusOneDetectionInterceptor(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCountInspector.start();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        report(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        report(request);
+    }
+
+    private void report(HttpServletRequest request) {
+        QueryCounter counter = QueryCountInspector.stop();
+        if (counter == null) {
+            return;
+        }
+        Map<String, Integer> repeated = counter.repeatedStatements(threshold);
+        if (!repeated.isEmpty()) {
+            log.warn("possible N+1 in {} {} ({} statements): {}",
+                    request.getMethod(), request.getRequestURI(), counter.getTotal(), repeated);
+        }
+    }
+}
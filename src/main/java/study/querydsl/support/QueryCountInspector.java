@@ -0,0 +1,39 @@
+package study.querydsl.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 하이버네이트가 준비하는 모든 SQL 을 현재 스레드의 {@link QueryCounter} 에 기록한다.
+ * start() 로 시작한 스레드만 세고, 나머지는 그대로 통과시킨다.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<QueryCounter> COUNTER = new ThreadLocal<>();
+
+    private final StatementInspector delegate;
+
+    public QueryCountInspector(StatementInspector delegate) {
+        this.delegate = delegate;
+    }
+
+    public static QueryCounter start() {
+        QueryCounter counter = new QueryCounter();
+        COUNTER.set(counter);
+        return counter;
+    }
+
+    public static QueryCounter stop() {
+        QueryCounter counter = COUNTER.get();
+        COUNTER.remove();
+        return counter;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        QueryCounter counter = COUNTER.get();
+        if (counter != null) {
+            counter.add(sql);
+        }
+        return delegate != null ? delegate.inspect(sql) : sql;
+    }
+}
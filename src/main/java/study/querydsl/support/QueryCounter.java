@@ -0,0 +1,40 @@
+package study.querydsl.support;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 한 스레드에서 실행된 SQL 을 문장별로 센다.
+ * 바인딩 값은 ? 로 남아 있으므로 같은 문장이 여러 번 찍히면 대개 루프 안의 지연 로딩(N+1) 이다.
+ *
+ * @see QueryCountInspector
+ */
+public class QueryCounter {
+
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private int total;
+
+    void add(String sql) {
+        counts.merge(sql, 1, Integer::sum);
+        total++;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public Map<String, Integer> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * threshold 번 이상 실행된 문장과 실행 횟수
+     */
+    public Map<String, Integer> repeatedStatements(int threshold) {
+        return counts.entrySet().stream()
+                .filter(entry -> entry.getValue() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+}
@@ -0,0 +1,212 @@
+package study.querydsl.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Querydsl 쿼리 실행 시간/건수를 쿼리 모양(shape)별로 기록한다.
+ * <ul>
+ *     <li>querydsl.query (timer, tag: shape, type=content|count)</li>
+ *     <li>querydsl.query.rows (distribution summary, tag: shape)</li>
+ *     <li>querydsl.query.count.cached (counter, tag: shape) - CountStrategy 캐시로 답해 count 쿼리를 실행하지 않은 횟수</li>
+ * </ul>
+ * count 타이머는 실제로 실행한 count 쿼리만 잰다. 미터는 shape 별로 한 번만 만들어 재사용한다.
+ * 실행 시간이 slow-query-threshold 를 넘으면 JPQL 과 바인딩 값을 WARN 으로 남긴다.
+ */
+@Slf4j
+@Component
+public class QueryMetrics {
+
+    public static final String CONTENT = "content";
+    public static final String COUNT = "count";
+
+    private final MeterRegistry registry;
+    private final long slowQueryThresholdNanos;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> cachedCounts = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry,
+                        @Value("${querydsl.metrics.slow-query-threshold:500ms}") Duration slowQueryThreshold) {
+        this.registry = registry;
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    public <T> List<T> fetch(String shape, JPQLQuery<T> query) {
+        return record(shape, CONTENT, query, query::fetch, List::size);
+    }
+
+    public long count(String shape, JPQLQuery<?> query, LongSupplier count) {
+        return record(shape, COUNT, query, count::getAsLong, total -> total);
+    }
+
+    /**
+     * countStrategy 가 캐시로 답하면 querydsl.query.count.cached 만 올리고, count 쿼리를 실행할 때만 시간을 잰다.
+     */
+    public long count(String shape, JPAQuery<?> query, CountStrategy countStrategy, Object key) {
+        OptionalLong cached = countStrategy.cached(key);
+        if (cached.isPresent()) {
+            cachedCounts.computeIfAbsent(shape, name -> Counter.builder("querydsl.query.count.cached")
+                    .tag("shape", name)
+                    .register(registry))
+                    .increment();
+            return cached.getAsLong();
+        }
+        return count(shape, query, () -> countStrategy.count(key, query));
+    }
+
+    public <T> T record(String shape, String type, JPQLQuery<?> query, Supplier<T> execution, ToLongFunction<T> rows) {
+        return record(shape, type, () -> describe(query), execution, rows);
+    }
+
+    /**
+     * Querydsl 을 거치지 않는 JPQL 용
+     */
+    public <T> List<T> fetch(String shape, String jpql, Map<String, ?> params, Supplier<List<T>> execution) {
+        return record(shape, CONTENT, () -> jpql + "\nparams=" + params, execution, List::size);
+    }
+
+    private <T> T record(String shape, String type, Supplier<String> description, Supplier<T> execution,
+                         ToLongFunction<T> rows) {
+        long start = System.nanoTime();
+        T result = execution.get();
+        long elapsed = System.nanoTime() - start;
+
+        timers.computeIfAbsent(shape + "#" + type, name -> Timer.builder("querydsl.query")
+                .tag("shape", shape)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        long rowCount = rows.applyAsLong(result);
+        if (CONTENT.equals(type)) {
+            rowSummaries.computeIfAbsent(shape, name -> DistributionSummary.builder("querydsl.query.rows")
+                    .tag("shape", name)
+                    .register(registry))
+                    .record(rowCount);
+        }
+        if (elapsed >= slowQueryThresholdNanos) {
+            log.warn("slow query shape={} type={} elapsed={}ms rows={}\n{}",
+                    shape, type, TimeUnit.NANOSECONDS.toMillis(elapsed), rowCount, description.get());
+        }
+        return result;
+    }
+
+    private String describe(JPQLQuery<?> query) {
+        QueryMetadata metadata = query.getMetadata();
+        QueryModifiers modifiers = metadata.getModifiers();
+        return query + "\nparams=" + constantsOf(metadata)
+                + " limit=" + modifiers.getLimit() + " offset=" + modifiers.getOffset();
+    }
+
+    private List<Object> constantsOf(QueryMetadata metadata) {
+        List<Object> constants = new ArrayList<>();
+        ConstantCollector.collect(metadata, constants);
+        return constants;
+    }
+
+    /**
+     * JPQL 직렬화 순서(join, where, group by, having)대로 바인딩 값을 모은다.
+     */
+    private static final class ConstantCollector implements Visitor<Void, List<Object>> {
+
+        private static final ConstantCollector INSTANCE = new ConstantCollector();
+
+        static void collect(QueryMetadata metadata, List<Object> constants) {
+            accept(metadata.getProjection(), constants);
+            for (JoinExpression join : metadata.getJoins()) {
+                accept(join.getCondition(), constants);
+            }
+            accept(metadata.getWhere(), constants);
+            for (Expression<?> groupBy : metadata.getGroupBy()) {
+                accept(groupBy, constants);
+            }
+            accept(metadata.getHaving(), constants);
+        }
+
+        private static void accept(Expression<?> expr, List<Object> constants) {
+            if (expr != null) {
+                expr.accept(INSTANCE, constants);
+            }
+        }
+
+        @Override
+        public Void visit(Constant<?> expr, List<Object> context) {
+            context.add(expr.getConstant());
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, List<Object> context) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, context);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, List<Object> context) {
+            for (Expression<?> arg : expr.getArgs()) {
+                arg.accept(this, context);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, List<Object> context) {
+            context.add(":" + expr.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, List<Object> context) {
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, List<Object> context) {
+            collect(expr.getMetadata(), context);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, List<Object> context) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    ((Expression<?>) arg).accept(this, context);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,24 +1,40 @@
 package study.querydsl.support;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPQLTemplates;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.support.JpaEntityInformation;
-import
-org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.support.Querydsl;
-import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 /**
 * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
  *
@@ -30,24 +46,45 @@ org.springframework.data.jpa.repository.support.QuerydslRepositorySupport
 public abstract class Querydsl4RepositorySupport {
     private final Class domainClass;
     private Querydsl querydsl;
+    private PathBuilder<?> entityPath;
      private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private JPQLTemplates templates;
+    private CountQueryExecutor countQueryExecutor;
+    private QueryMetrics queryMetrics;
+    private TransactionTemplate chunkTx;
+    private static final StackWalker STACK_WALKER =
+            StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
 }
+    /**
+     * Querydsl 의존성을 한 번에 주입한다. 세터가 아니므로 set 접두어를 쓰지 않는다.
+     */
     @Autowired
-    public void setEntityManager(EntityManager entityManager) {
+    public void init(EntityManager entityManager, JPAQueryFactory queryFactory,
+                     JPQLTemplates templates, EntityPathRegistry entityPathRegistry) {
         Assert.notNull(entityManager, "EntityManager must not be null!");
-        JpaEntityInformation entityInformation =
-JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
-        SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
-        EntityPath path = resolver.createPath(entityInformation.getJavaType());
         this.entityManager = entityManager;
-        this.querydsl = new Querydsl(entityManager, new
-PathBuilder<>(path.getType(), path.getMetadata()));
-        this.queryFactory = new JPAQueryFactory(entityManager);
+        this.querydsl = entityPathRegistry.querydsl(domainClass);
+        this.entityPath = entityPathRegistry.pathBuilder(domainClass);
+        this.templates = templates;
+        this.queryFactory = queryFactory;
 }
+    @Autowired
+    public void setCountQueryExecutor(CountQueryExecutor countQueryExecutor) {
+        this.countQueryExecutor = countQueryExecutor;
+    }
+    @Autowired
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
@@ -72,19 +109,240 @@ PathBuilder<>(path.getType(), path.getMetadata()));
 }
       protected <T> Page<T> applyPagination(Pageable pageable,
   Function<JPAQueryFactory, JPAQuery> contentQuery) {
+          String shape = shape();
           JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-          List<T> content = getQuerydsl().applyPagination(pageable,
-  jpaQuery).fetch();
+          JPAQuery<?> countQuery = countQueryOf(jpaQuery);
+          List<T> content = fetchPage(shape, pageable, jpaQuery);
           return PageableExecutionUtils.getPage(content, pageable,
-  jpaQuery::fetchCount);
+  () -> fetchCount(shape, countQuery));
 }
       protected <T> Page<T> applyPagination(Pageable pageable,
   Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
   JPAQuery> countQuery) {
+          String shape = shape();
           JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-          List<T> content = getQuerydsl().applyPagination(pageable,
-  jpaContentQuery).fetch();
-          JPAQuery countResult = countQuery.apply(getQueryFactory());
+          List<T> content = fetchPage(shape, pageable, jpaContentQuery);
+          JPAQuery<?> countResult = countQueryOf(countQuery.apply(getQueryFactory()));
           return PageableExecutionUtils.getPage(content, pageable,
-  countResult::fetchCount);
-} }
\ No newline at end of file
+  () -> fetchCount(shape, countResult));
+}
+    /**
+     * concurrentCount 가 true 이면 count 쿼리를 별도 읽기 전용 트랜잭션에서 content 쿼리와 동시에 실행한다.
+     * 트랜잭션 안에서 호출되면(리포지토리의 @Transactional 포함) 순차 실행한다. ({@link CountQueryExecutor})
+     */
+    protected <T> Page<T> applyPagination(Pageable pageable,
+            Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery,
+            boolean concurrentCount) {
+        String shape = shape();
+        return countQueryExecutor.getPage(pageable,
+                () -> fetchPage(shape, pageable, contentQuery.apply(getQueryFactory())),
+                () -> fetchCount(shape, countQueryOf(countQuery.apply(getQueryFactory()))),
+                concurrentCount);
+    }
+
+    /**
+     * count 를 countStrategy 로 구한다. countKey 는 정규화된 검색 조건처럼 같은 결과를 내는 조건이 같은 값이어야 한다.
+     */
+    protected <T> Page<T> applyPagination(Pageable pageable,
+            Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery,
+            CountStrategy countStrategy, Object countKey) {
+        String shape = shape();
+        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        List<T> content = fetchPage(shape, pageable, jpaContentQuery);
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            JPAQuery<?> countResult = countQueryOf(countQuery.apply(getQueryFactory()));
+            return queryMetrics.count(shape, countResult, countStrategy, countKey);
+        });
+    }
+
+    /**
+     * 2단계 페이징. idQuery 로 해당 페이지의 id 만 정렬(+ id tiebreaker)/offset/limit 해서 읽고,
+     * contentQuery 로 그 id 들의 행을 읽은 뒤 id 순서대로 다시 세운다.
+     * 깊은 페이지에서 버려질 행의 넓은 컬럼과 조인을 읽지 않고, 1단계는 where/정렬 컬럼 인덱스만으로 끝날 수 있다.
+     *
+     * @param contentQuery 넘겨받은 id 목록으로 in 조건을 거는 쿼리. 정렬은 하지 않아도 된다.
+     * @param idOf         content 행에서 id 를 꺼내는 함수
+     */
+    protected <T, ID> Page<T> applyTwoPhasePagination(Pageable pageable,
+            Function<JPAQueryFactory, JPAQuery<ID>> idQuery,
+            BiFunction<JPAQueryFactory, List<ID>, JPAQuery<T>> contentQuery, Function<T, ID> idOf,
+            Function<JPAQueryFactory, JPAQuery> countQuery) {
+        String shape = shape();
+        List<ID> ids = fetchPage(shape, withIdTiebreaker(pageable), idQuery.apply(getQueryFactory()));
+        List<T> content = ids.isEmpty() ? new ArrayList<>()
+                : inIdOrder(ids, queryMetrics.fetch(shape, contentQuery.apply(getQueryFactory(), ids)), idOf);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> fetchCount(shape, countQueryOf(countQuery.apply(getQueryFactory()))));
+    }
+
+    /**
+     * 정렬 컬럼(age 등)이 유일하지 않으면 같은 값 사이의 순서가 실행마다 달라서 페이지 경계에서 행이 겹치거나 빠진다.
+     * id 로 한 번 더 정렬해 순서를 고정한다.
+     */
+    private Pageable withIdTiebreaker(Pageable pageable) {
+        String id = idPath().getMetadata().getName();
+        if (pageable.isUnpaged() || pageable.getSort().getOrderFor(id) != null) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().and(Sort.by(id)));
+    }
+
+    private static <T, ID> List<T> inIdOrder(List<ID> ids, List<T> rows, Function<T, ID> idOf) {
+        Map<ID, Integer> position = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            position.put(ids.get(i), i);
+        }
+        List<T> ordered = new ArrayList<>(rows);
+        ordered.sort(Comparator.comparing(row -> position.get(idOf.apply(row))));
+        return ordered;
+    }
+
+    /**
+     * count 쿼리 없이 pageSize + 1 건을 읽어 다음 페이지 존재 여부만 판단한다.
+     */
+    protected <T> Slice<T> applySlicing(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(jpaQuery.fetch(), pageable, false);
+        }
+        List<T> content = queryMetrics.fetch(shape(), getQuerydsl().applySorting(pageable.getSort(), jpaQuery)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1));
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    /**
+     * order by, projection, fetch join 과 불필요한 to-one left join 을 걷어낸 count 용 쿼리
+     *
+     * @see CountQueries
+     */
+    protected JPAQuery<?> countQueryOf(JPAQuery<?> query) {
+        return CountQueries.derive(getEntityManager(), templates, query);
+    }
+
+    /**
+     * predicate 에 맞는 행을 id 순으로 chunkSize 건씩 잘라 update 한다.
+     * 청크마다 새 트랜잭션으로 커밋하므로 한 문장이 넓은 범위를 오래 잠그지 않는다. 중간에 실패해도 이미 커밋된 청크는 남는다.
+     * 청크 루프 전후로 호출한 쪽(바깥 읽기 전용 트랜잭션)의 EntityManager 를 flush/clear 해서 벌크 update 뒤에 옛 엔티티가
+     * 남지 않게 하고, 캐시는 벌크 update 가 발행하는 BULK 이벤트로 무효화된다.
+     * 바깥 쓰기 트랜잭션이 잡은 잠금과 충돌하므로 쓰기 트랜잭션 안에서는 호출할 수 없다.
+     *
+     * @param setter 예) update -> update.set(member.age, member.age.add(1))
+     * @return 변경된 전체 행 수
+     */
+    protected long bulkUpdate(Predicate predicate, Consumer<JPAUpdateClause> setter, int chunkSize) {
+        return bulkUpdate(predicate, setter, chunkSize, BulkProgressListener.NONE);
+    }
+
+    protected long bulkUpdate(Predicate predicate, Consumer<JPAUpdateClause> setter, int chunkSize,
+                              BulkProgressListener listener) {
+        return executeInChunks(predicate, chunkSize, listener, range -> {
+            JPAUpdateClause update = getQueryFactory().update(entityPath);
+            setter.accept(update);
+            return update.where(predicate, range).execute();
+        });
+    }
+
+    /**
+     * bulkUpdate 와 같은 방식으로 청크 단위 delete
+     */
+    protected long bulkDelete(Predicate predicate, int chunkSize) {
+        return bulkDelete(predicate, chunkSize, BulkProgressListener.NONE);
+    }
+
+    protected long bulkDelete(Predicate predicate, int chunkSize, BulkProgressListener listener) {
+        return executeInChunks(predicate, chunkSize, listener,
+                range -> getQueryFactory().delete(entityPath).where(predicate, range).execute());
+    }
+
+    /**
+     * 시작 시점의 max(id) 까지를 (lastId, upper] 범위로 나눈다. upper 는 매 청크마다 predicate 에 맞는
+     * chunkSize 번째 id 이므로 id 가 듬성듬성해도 빈 청크가 생기지 않는다.
+     */
+    private long executeInChunks(Predicate predicate, int chunkSize, BulkProgressListener listener,
+                                 ToLongFunction<Predicate> chunk) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+        Assert.state(!Transactions.inWritableTransaction(),
+                "Bulk operations must not run inside a writable transaction");
+        NumberPath<Long> id = idPath();
+        syncCallerPersistenceContext();
+        Long maxId = chunkTx.execute(status -> getQueryFactory()
+                .select(id.max())
+                .from(entityPath)
+                .where(predicate)
+                .fetchOne());
+        if (maxId == null) {
+            return 0;
+        }
+
+        try {
+            return executeChunks(predicate, chunkSize, listener, chunk, id, maxId);
+        } finally {
+            syncCallerPersistenceContext();
+        }
+    }
+
+    private long executeChunks(Predicate predicate, int chunkSize, BulkProgressListener listener,
+                               ToLongFunction<Predicate> chunk, NumberPath<Long> id, long maxId) {
+        long totalAffected = 0;
+        int chunkNo = 0;
+        Long lastId = null;
+        while (lastId == null || lastId < maxId) {
+            Predicate after = lastId == null ? null : id.gt(lastId);
+            long[] result = chunkTx.execute(status -> {
+                Long boundary = getQueryFactory()
+                        .select(id)
+                        .from(entityPath)
+                        .where(predicate, after, id.loe(maxId))
+                        .orderBy(id.asc())
+                        .offset(chunkSize - 1)
+                        .limit(1)
+                        .fetchOne();
+                long upper = boundary != null ? boundary : maxId;
+                long affected = chunk.applyAsLong(ExpressionUtils.allOf(after, id.loe(upper)));
+                return new long[]{upper, affected};
+            });
+            lastId = result[0];
+            totalAffected += result[1];
+            listener.onChunk(++chunkNo, lastId, result[1], totalAffected);
+        }
+        return totalAffected;
+    }
+
+    /**
+     * chunkTx 밖에서 부르면 공유 EntityManager 는 호출한 쪽 트랜잭션의 것이다. 트랜잭션이 없으면 들고 있는 엔티티도 없다.
+     */
+    private void syncCallerPersistenceContext() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            getEntityManager().flush();
+            getEntityManager().clear();
+        }
+    }
+
+    private NumberPath<Long> idPath() {
+        String idName = getEntityManager().getMetamodel().entity(domainClass).getId(Long.class).getName();
+        return entityPath.getNumber(idName, Long.class);
+    }
+
+    private <T> List<T> fetchPage(String shape, Pageable pageable, JPAQuery<T> query) {
+        return queryMetrics.fetch(shape, getQuerydsl().applyPagination(pageable, query));
+    }
+
+    private long fetchCount(String shape, JPAQuery<?> countQuery) {
+        return queryMetrics.count(shape, countQuery, () -> CountQueries.count(countQuery));
+    }
+
+    /**
+     * 메트릭 태그로 쓸 쿼리 모양. 이 클래스를 호출한 하위 리포지토리의 메서드 이름이다.
+     */
+    private String shape() {
+        Class<?> repositoryClass = getClass();
+        String method = STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getDeclaringClass() == repositoryClass)
+                .map(StackWalker.StackFrame::getMethodName)
+                .findFirst()
+                .orElse("applyPagination"));
+        return repositoryClass.getSimpleName() + "." + method;
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.support;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 읽기 전용 트랜잭션은 replica, 나머지는 primary 로 보낸다.
+ * 트랜잭션 시작 시점에는 아직 readOnly 여부가 동기화 매니저에 기록되지 않으므로
+ * 반드시 LazyConnectionDataSourceProxy 로 감싸 실제 커넥션을 첫 쿼리 시점에 얻어야 한다.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaLagMonitor.isUsable()) {
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주기적으로 replica 의 복제 지연을 조회한다.
+ * 지연이 maxLag 를 넘거나 조회 자체가 실패하면 replica 를 쓰지 않도록 표시하고, 회복되면 다시 쓴다.
+ * lagQuery 는 지연(ms)을 숫자 하나로 돌려주는 쿼리여야 한다. 복제가 없는 H2 에서는 select 0 을 쓴다.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements InitializingBean, DisposableBean {
+
+    private final JdbcTemplate replica;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final Duration probeInterval;
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean usable;
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, Duration probeInterval) {
+        this.replica = new JdbcTemplate(replica);
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLag.toMillis();
+        this.probeInterval = probeInterval;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        probe();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probe,
+                probeInterval.toMillis(), probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void probe() {
+        boolean wasUsable = usable;
+        try {
+            Long lag = replica.queryForObject(lagQuery, Long.class);
+            lagMillis = lag == null ? -1 : lag;
+            usable = lag != null && lag <= maxLagMillis;
+        } catch (DataAccessException e) {
+            lagMillis = -1;
+            usable = false;
+            if (wasUsable) {
+                log.warn("replica lag probe failed, routing reads to primary", e);
+            }
+            return;
+        }
+        if (wasUsable != usable) {
+            log.info("replica {} (lag={}ms, maxLag={}ms)", usable ? "usable" : "lagging, routing reads to primary",
+                    lagMillis, maxLagMillis);
+        }
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    /**
+     * 마지막으로 관측한 지연(ms). 조회 실패 시 -1
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
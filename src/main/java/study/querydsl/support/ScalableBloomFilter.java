@@ -0,0 +1,157 @@
+package study.querydsl.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 크기가 늘어나는 Bloom filter. (Almeida et al., Scalable Bloom Filters)
+ * 현재 단계가 용량만큼 차면 용량 2배, 오탐률 절반인 단계를 새로 붙인다.
+ * 전체 오탐률은 단계별 오탐률의 합(fpp / (1 - 1/2) = 2 * fpp) 을 넘지 않는다.
+ * <p>
+ * 조회는 잠금 없이, 추가는 단계 교체 때문에 synchronized 로 처리한다.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final double fpp;
+    private volatile List<Stage> stages;
+
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        if (initialCapacity < 1 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("initialCapacity must be positive and fpp in (0, 1)");
+        }
+        this.fpp = fpp;
+        List<Stage> initial = new ArrayList<>();
+        initial.add(new Stage(initialCapacity, fpp * (1 - TIGHTENING)));
+        this.stages = initial;
+    }
+
+    public boolean mightContain(String value) {
+        long[] hash = hash(value);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void put(String value) {
+        long[] hash = hash(value);
+        List<Stage> current = stages;
+        for (Stage stage : current) {
+            if (stage.mightContain(hash)) {
+                return;
+            }
+        }
+        Stage last = current.get(current.size() - 1);
+        if (last.count >= last.capacity) {
+            List<Stage> grown = new ArrayList<>(current);
+            last = new Stage(last.capacity * GROWTH, last.fpp * TIGHTENING);
+            grown.add(last);
+            stages = grown;
+        }
+        last.put(hash);
+    }
+
+    /**
+     * 현재 채워진 정도로 계산한 오탐률. 1 - Π(1 - 단계별 오탐률)
+     */
+    public double expectedFpp() {
+        double none = 1;
+        for (Stage stage : stages) {
+            none *= 1 - stage.currentFpp();
+        }
+        return 1 - none;
+    }
+
+    /**
+     * 설정한 오탐률 상한
+     */
+    public double getFpp() {
+        return fpp;
+    }
+
+    public long bitSize() {
+        return stages.stream().mapToLong(stage -> stage.bits).sum();
+    }
+
+    public long approximateCount() {
+        return stages.stream().mapToLong(stage -> stage.count).sum();
+    }
+
+    /**
+     * 64bit FNV-1a 두 개(다른 시드)로 만든 해시. k 개의 인덱스는 h1 + i * h2 로 만든다. (Kirsch-Mitzenmacher)
+     */
+    private static long[] hash(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x84222325cbf29ce4L;
+        for (byte b : bytes) {
+            h1 = (h1 ^ (b & 0xff)) * 0x100000001b3L;
+            h2 = (h2 ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return new long[]{mix(h1), mix(h2) | 1};
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stage {
+        final long capacity;
+        final double fpp;
+        final long bits;
+        final int hashes;
+        final AtomicLongArray words;
+        volatile long count;
+
+        Stage(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            this.bits = Math.max(64, (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+        }
+
+        boolean mightContain(long[] hash) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = index(hash, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long[] hash) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = index(hash, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                do {
+                    old = words.get(word);
+                } while ((old & mask) == 0 && !words.compareAndSet(word, old, old | mask));
+            }
+            count++;
+        }
+
+        private long index(long[] hash, int i) {
+            return Math.floorMod(hash[0] + i * hash[1], bits);
+        }
+
+        double currentFpp() {
+            return Math.pow(1 - Math.exp(-(double) hashes * count / bits), hashes);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.support;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class Transactions {
+
+    private Transactions() {
+    }
+
+    /**
+     * 현재 스레드가 쓰기 트랜잭션 안에 있는지.
+     * 이 경우 아직 커밋되지 않은 데이터를 보고 있으므로 다른 스레드/요청과 결과를 공유하면 안 된다.
+     */
+    public static boolean inWritableTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
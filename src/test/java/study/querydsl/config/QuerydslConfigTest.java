@@ -0,0 +1,54 @@
+package study.querydsl.config;
+
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+import study.querydsl.support.ChangePublishingJPAQueryFactory;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+class QuerydslConfigTest {
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    JPQLTemplates jpqlTemplates;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void sharedFactoryPublishesChangesWithHqlTemplates() throws Exception {
+        assertThat(queryFactory).isInstanceOf(ChangePublishingJPAQueryFactory.class);
+        assertThat(jpqlTemplates).isSameAs(HQLTemplates.DEFAULT);
+    }
+
+    /**
+     * 싱글톤 팩토리가 트랜잭션마다 그 트랜잭션의 EntityManager 를 쓰는지. 롤백된 행은 다음 트랜잭션에서 안 보인다.
+     */
+    @Test
+    public void sharedFactoryUsesTransactionBoundEntityManager() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            em.persist(new Team("configTeam"));
+            em.flush();
+            assertThat(queryFactory.selectFrom(team).where(team.name.eq("configTeam")).fetch()).hasSize(1);
+            status.setRollbackOnly();
+        });
+
+        Long count = tx.execute(status -> queryFactory.select(team.count()).from(team)
+                .where(team.name.eq("configTeam")).fetchOne());
+        assertThat(count).isZero();
+    }
+}
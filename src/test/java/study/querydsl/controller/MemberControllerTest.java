@@ -0,0 +1,111 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        Team team = new Team("ctrlTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("ctrlMember" + i, 10 + i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void streamWritesPlainJson() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/v3/members/stream")
+                        .param("teamName", "ctrlTeam").param("page", "0").param("size", "2"))
+                .andReturn().getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        JsonNode page = objectMapper.readTree(response.getContentAsByteArray());
+        assertThat(page.get("content")).hasSize(2);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(5);
+        assertThat(page.get("totalPages").asInt()).isEqualTo(3);
+    }
+
+    @Test
+    public void streamWritesGzipWhenAccepted() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/v2/members/stream")
+                        .param("teamName", "ctrlTeam")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8"))
+                .andReturn().getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        JsonNode page = objectMapper.readTree(
+                new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+        assertThat(page.get("content")).hasSize(5);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(5);
+    }
+
+    @Test
+    public void streamSkipsGzipWhenRefused() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/v2/members/stream")
+                        .param("teamName", "ctrlTeam")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andReturn().getResponse();
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(objectMapper.readTree(response.getContentAsByteArray()).get("content")).hasSize(5);
+    }
+
+    @Test
+    public void sliceRejectsBadCursorAndSize() throws Exception {
+        assertThat(mockMvc.perform(get("/v4/members").param("cursor", "not a cursor!"))
+                .andReturn().getResponse().getStatus()).isEqualTo(400);
+        assertThat(mockMvc.perform(get("/v4/members").param("size", "0"))
+                .andReturn().getResponse().getStatus()).isEqualTo(400);
+        assertThat(mockMvc.perform(get("/v4/members").param("teamName", "ctrlTeam")
+                        .param("size", String.valueOf(Integer.MAX_VALUE)))
+                .andReturn().getResponse().getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void exportRejectsUnknownFormat() throws Exception {
+        assertThat(mockMvc.perform(get("/members/export").param("format", "xml"))
+                .andReturn().getResponse().getStatus()).isEqualTo(400);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/members/export")
+                        .param("teamName", "ctrlTeam").param("format", "ndjson"))
+                .andReturn().getResponse();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).startsWith("application/x-ndjson");
+        assertThat(response.getContentAsString().split("\n")).hasSize(5);
+    }
+}
@@ -0,0 +1,81 @@
+package study.querydsl.entity;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.QueryCounter;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.support.QueryCountAssertions.assertNoRepeatedQueries;
+
+@SpringBootTest
+@Transactional
+class NPlusOneTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+
+    List<Long> memberIds;
+    List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("batchTeam" + i);
+            em.persist(team);
+            teamIds.add(team.getId());
+            em.persist(new Member("batchMember" + i + "a", 10, team));
+            em.persist(new Member("batchMember" + i + "b", 20, team));
+        }
+        em.flush();
+        em.clear();
+        memberIds = em.createQuery("select m.id from Member m where m.team.id in :teamIds", Long.class)
+                .setParameter("teamIds", teamIds)
+                .getResultList();
+        em.clear();
+    }
+
+    /**
+     * 이 테스트가 만든 회원만 읽는다. 공유 DB 에 다른 팀이 batch 크기(100)보다 많이 있어도 결과가 같다.
+     */
+    @Test
+    public void memberTeamIsBatchFetched() throws Exception {
+        QueryCounter counter = assertNoRepeatedQueries(() -> {
+            List<Member> members = memberRepository.findAllById(memberIds);
+            assertThat(members).hasSize(6);
+            members.forEach(member -> member.getTeam().getName());
+        });
+
+        assertThat(counter.getTotal()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void teamMembersAreBatchFetched() throws Exception {
+        QueryCounter counter = assertNoRepeatedQueries(() -> em
+                .createQuery("select t from Team t where t.id in :teamIds", Team.class)
+                .setParameter("teamIds", teamIds)
+                .getResultList()
+                .forEach(team -> assertThat(team.getMembers()).hasSize(2)));
+
+        assertThat(counter.getTotal()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void repeatedStatementIsReported() throws Exception {
+        assertThatThrownBy(() -> assertNoRepeatedQueries(() -> memberIds.forEach(id -> em
+                .createQuery("select m from Member m where m.id = :id", Member.class)
+                .setParameter("id", id)
+                .getSingleResult())))
+                .isInstanceOf(AssertionError.class);
+    }
+}
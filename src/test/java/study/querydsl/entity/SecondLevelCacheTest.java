@@ -0,0 +1,85 @@
+package study.querydsl.entity;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 2차 캐시는 커밋 시점에 채워지므로 트랜잭션을 테스트마다 직접 나눠서 커밋한다.
+ */
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    TransactionTemplate tx;
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'cacheMember%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name = 'cacheTeam'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void bulkUpdateEvictsCachedEntity() throws Exception {
+        Long memberId = tx.execute(status -> {
+            Team team = new Team("cacheTeam");
+            em.persist(team);
+            Member saved = new Member("cacheMember", 10, team);
+            em.persist(saved);
+            return saved.getId();
+        });
+
+        tx.executeWithoutResult(status -> em.find(Member.class, memberId));
+        assertThat(emf.unwrap(SessionFactory.class).getCache().containsEntity(Member.class, memberId)).isTrue();
+
+        tx.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.age, 11)
+                .where(member.id.eq(memberId))
+                .execute());
+
+        Integer age = tx.execute(status -> em.find(Member.class, memberId).getAge());
+        assertThat(age).isEqualTo(11);
+    }
+
+    @Test
+    public void memberInsertEvictsCachedTeamMembers() throws Exception {
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("cacheTeam");
+            em.persist(team);
+            em.persist(new Member("cacheMember", 10, team));
+            return team.getId();
+        });
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId).getMembers().size());
+        assertThat(emf.unwrap(SessionFactory.class).getCache()
+                .containsCollection(Team.class.getName() + ".members", teamId)).isTrue();
+
+        // Team.members 를 건드리지 않고 Member.team 만 설정한다
+        tx.executeWithoutResult(status -> {
+            Member other = new Member("cacheMember2", 20);
+            other.setTeam(em.getReference(Team.class, teamId));
+            em.persist(other);
+        });
+
+        Integer size = tx.execute(status -> em.find(Team.class, teamId).getMembers().size());
+        assertThat(size).isEqualTo(2);
+    }
+}
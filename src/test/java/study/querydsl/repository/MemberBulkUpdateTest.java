@@ -0,0 +1,127 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.BulkProgressListener;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 청크마다 별도 트랜잭션으로 커밋하므로 테스트 트랜잭션 없이 실행하고 직접 정리한다.
+ */
+@SpringBootTest
+class MemberBulkUpdateTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Team teamA;
+    Team teamB;
+
+    @BeforeEach
+    void setUp() {
+        tx.executeWithoutResult(status -> {
+            teamA = new Team("bulkTeamA");
+            teamB = new Team("bulkTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 25; i++) {
+                em.persist(new Member("bulk" + i, i, teamA));
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team in (:teams)")
+                    .setParameter("teams", List.of(teamA, teamB))
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t in (:teams)")
+                    .setParameter("teams", List.of(teamA, teamB))
+                    .executeUpdate();
+        });
+    }
+
+    @Test
+    public void increaseAgeInChunks() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+        condition.setAgeGoe(10);
+        List<long[]> progress = new ArrayList<>();
+
+        long updated = memberTestRepository.increaseAge(condition, 4,
+                (chunk, lastId, affected, totalAffected) -> progress.add(new long[]{chunk, affected, totalAffected}));
+
+        assertThat(updated).isEqualTo(15);
+        assertThat(progress).hasSize(4);
+        assertThat(progress).extracting(p -> p[1]).containsExactly(4L, 4L, 4L, 3L);
+        assertThat(progress.get(3)[2]).isEqualTo(15);
+
+        List<Integer> ages = tx.execute(status -> em
+                .createQuery("select m.age from Member m where m.team = :team order by m.id", Integer.class)
+                .setParameter("team", teamA)
+                .getResultList());
+        assertThat(ages.subList(0, 10)).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(ages.subList(10, 25)).containsExactly(11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25);
+    }
+
+    @Test
+    public void reassignTeam() throws Exception {
+        long moved = memberTestRepository.reassignTeam(teamA, teamB, 10);
+
+        assertThat(moved).isEqualTo(25);
+        Long remaining = tx.execute(status -> em
+                .createQuery("select count(m) from Member m where m.team = :team", Long.class)
+                .setParameter("team", teamA)
+                .getSingleResult());
+        assertThat(remaining).isZero();
+    }
+
+    @Test
+    public void outerTransactionSeesUpdatedEntities() throws Exception {
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamA");
+
+        Integer age = readOnlyTx.execute(status -> {
+            Member loaded = em.createQuery("select m from Member m where m.username = 'bulk20'", Member.class)
+                    .getSingleResult();
+            assertThat(loaded.getAge()).isEqualTo(20);
+
+            memberTestRepository.increaseAge(condition, 10, BulkProgressListener.NONE);
+
+            assertThat(em.contains(loaded)).isFalse();
+            return em.find(Member.class, loaded.getId()).getAge();
+        });
+
+        assertThat(age).isEqualTo(21);
+    }
+
+    @Test
+    public void rejectedInsideWritableTransaction() throws Exception {
+        assertThatThrownBy(() -> tx.executeWithoutResult(status ->
+                memberTestRepository.reassignTeam(teamA, teamB, 10)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -9,11 +9,18 @@ import study.querydsl.Dto.MemberSearchCondition;
 import study.querydsl.Dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.support.QueryCountAssertions;
+import study.querydsl.support.QueryCounter;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -67,4 +74,78 @@ class MemberJpaRepositoryTest {
 
         Assertions.assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamSearchTest() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamB));
+        em.persist(new Member("member3", 30, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.streamSearch(condition, 1)) {
+            List<String> usernames = stream.map(MemberTeamDto::getUsername).collect(Collectors.toList());
+            Assertions.assertThat(usernames).containsExactly("member2", "member3");
+        }
+    }
+
+    /**
+     * baseline 의 teamNameEq 는 member.username 을 팀 이름과 비교했다.
+     * 팀 이름과 같은 username 을 다른 팀에 두고 팀으로 걸러지는지 본다.
+     */
+    @Test
+    public void teamNameFiltersByTeamNotUsername() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("teamB", 10, teamA));
+        em.persist(new Member("member2", 20, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.streamSearch(condition, 10)) {
+            Assertions.assertThat(stream.map(MemberTeamDto::getUsername).collect(Collectors.toList()))
+                    .containsExactly("member2");
+        }
+    }
+
+    @Test
+    public void saveAllTest() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            members.add(new Member("member" + i, i % 100, teamA));
+        }
+
+        long[] saved = new long[1];
+        QueryCounter counter = QueryCountAssertions.countQueries(() -> saved[0] = memberJpaRepository.saveAll(members));
+
+        Assertions.assertThat(saved[0]).isEqualTo(1_200);
+        // batch_size 100: insert 문장은 batch 마다 한 번만 준비된다. (flush 마다 덜 찬 batch 하나까지 허용)
+        // 배치가 꺼져 있으면 행마다 준비되어 1,200 번이 된다.
+        Assertions.assertThat(statements(counter, "insert into member")).isLessThanOrEqualTo(1_200 / 100 + 3);
+        // allocationSize 50 (pooled-lo): 시퀀스는 50 건마다 한 번
+        Assertions.assertThat(statements(counter, "member_seq")).isLessThanOrEqualTo(1_200 / 50 + 1);
+        // 호출한 쪽이 관리하던 팀은 그대로 두고 저장한 회원만 준영속이 된다
+        Assertions.assertThat(em.contains(teamA)).isTrue();
+        Assertions.assertThat(em.contains(members.get(0))).isFalse();
+        Assertions.assertThat(memberJpaRepository.findAll()).hasSize(1_200);
+        Assertions.assertThat(memberJpaRepository.findByUsername("member1199")).hasSize(1);
+    }
+
+    private static int statements(QueryCounter counter, String fragment) {
+        return counter.getCounts().entrySet().stream()
+                .filter(entry -> entry.getKey().toLowerCase(Locale.ROOT).contains(fragment))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+}
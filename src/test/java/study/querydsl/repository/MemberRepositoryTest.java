@@ -1,20 +1,33 @@
 package study.querydsl.repository;
 
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import study.querydsl.Dto.MemberCursor;
 import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberSlice;
 import study.querydsl.Dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.entity.QTeam;
 import study.querydsl.entity.Team;
+import study.querydsl.service.MemberSearchService;
+import study.querydsl.support.CountStrategy;
+import study.querydsl.support.QueryCountAssertions;
+import study.querydsl.support.QueryCounter;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -28,6 +41,9 @@ class MemberRepositoryTest {
     EntityManager em;
 
     @Autowired MemberRepository memberRepository;
+    @Autowired MemberTestRepository memberTestRepository;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberSearchService memberSearchService;
     @Test
     public void basicTest() throws Exception {
         Member member = new Member("member1", 10);
@@ -43,6 +59,27 @@ class MemberRepositoryTest {
         assertThat(member11).containsExactly(member);
     }
     @Test
+    public void findByUsernameSkipsQueryForUnknownName() throws Exception {
+        Member member = new Member("bloomMember", 10);
+        memberRepository.save(member);
+
+        QueryCounter found = QueryCountAssertions.countQueries(() ->
+                assertThat(memberRepository.findByUsername("bloomMember")).containsExactly(member));
+        assertThat(found.getTotal()).isGreaterThan(0);
+
+        QueryCounter missing = QueryCountAssertions.countQueries(() ->
+                assertThat(memberRepository.findByUsername("noSuchMember")).isEmpty());
+        assertThat(missing.getTotal()).isZero();
+    }
+    @Test
+    public void findByUsernameSeesUnflushedChanges() throws Exception {
+        Member member = new Member("beforeRename", 10);
+        memberRepository.save(member);
+        member.setUsername("afterRename");
+
+        assertThat(memberRepository.findByUsername("afterRename")).containsExactly(member);
+    }
+    @Test
     public void searchTest() throws Exception {
         Team teamA = new Team("teamA");
         Team teamB = new Team("teamB");
@@ -94,6 +131,250 @@ class MemberRepositoryTest {
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
 
     }
+    @Test
+    public void searchPageComplexConcurrentCountTest() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+
+        //쓰기 트랜잭션 안이므로 순차 실행으로 돌아가 아직 커밋되지 않은 데이터까지 센다
+        Page<MemberTeamDto> result = memberSearchService.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 3), true);
+
+        assertThat(result.getContent()).hasSize(3);
+        assertThat(result.getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    public void cachedCountInvalidatedOnWriteTest() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        PageRequest pageRequest = PageRequest.of(0, 1);
+
+        assertThat(memberRepository.searchPageComplex(condition, pageRequest).getTotalElements()).isEqualTo(2);
+
+        em.persist(new Member("member3", 30, teamA));
+        em.flush();
+
+        assertThat(memberRepository.searchPageComplex(condition, pageRequest).getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void blankAndPaddedConditionsSearchLikeNormalized() throws Exception {
+        Team teamA = new Team("normTeamA");
+        em.persist(teamA);
+        em.persist(new Member("normMember1", 10, teamA));
+        em.persist(new Member("normMember2", 20, teamA));
+        em.persist(new Member("normMember3", 30));
+
+        MemberSearchCondition padded = new MemberSearchCondition();
+        padded.setTeamName(" normTeamA ");
+        padded.setUsername("  ");
+        MemberSearchCondition normalized = padded.normalize();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        assertThat(memberRepository.search(padded)).hasSize(2)
+                .containsExactlyInAnyOrderElementsOf(memberRepository.search(normalized));
+        assertThat(memberRepository.searchPageSimple(padded, pageRequest).getTotalElements()).isEqualTo(2);
+        assertThat(memberRepository.searchPageComplex(padded, pageRequest).getTotalElements()).isEqualTo(2);
+        assertThat(memberRepository.countBySearch(padded)).isEqualTo(memberRepository.countBySearch(normalized));
+    }
+
+    @Test
+    public void searchSliceTest() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 40, teamA));
+        em.persist(new Member("member2", 30, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 10, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        MemberSlice first = memberRepository.searchSlice(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        MemberSlice second = memberRepository.searchSlice(condition, first.getNextCursor(), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+
+        MemberSlice byAge = memberRepository.searchSliceOrderByAge(condition, null, 2);
+        assertThat(byAge.getContent()).extracting("username").containsExactly("member4", "member3");
+        MemberSlice byAgeNext = memberRepository.searchSliceOrderByAge(condition, byAge.getNextCursor(), 2);
+        assertThat(byAgeNext.getContent()).extracting("username").containsExactly("member2", "member1");
+    }
+
+    @Test
+    public void searchSliceChecksSizeBeforeQuery() throws Exception {
+        em.persist(new Member("sliceMember1", 10));
+        em.persist(new Member("sliceMember2", 20));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameStartsWith("sliceMember");
+
+        QueryCounter counter = QueryCountAssertions.countQueries(() -> {
+            assertThatThrownBy(() -> memberRepository.searchSlice(condition, null, 0))
+                    .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> memberRepository.searchSliceOrderByAge(condition, null, -1))
+                    .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+        });
+        assertThat(counter.getTotal()).isEqualTo(0);
+
+        MemberSlice all = memberRepository.searchSlice(condition, null, Integer.MAX_VALUE);
+        assertThat(all.getContent()).extracting("username").containsExactly("sliceMember1", "sliceMember2");
+        assertThat(all.isHasNext()).isFalse();
+        assertThat(memberRepository.searchSliceOrderByAge(condition, null, Integer.MAX_VALUE).getContent())
+                .hasSize(2);
+    }
+
+    @Test
+    public void searchSliceRejectsMalformedCursor() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        assertThatThrownBy(() -> memberRepository.searchSlice(condition, "not a cursor!", 10))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        String idCursor = MemberCursor.ofId(1L).encode();
+        assertThatThrownBy(() -> memberRepository.searchSliceOrderByAge(condition, idCursor, 10))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void searchPageTwoPhaseTest() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        PageRequest pageRequest = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "age"));
+
+        Page<MemberTeamDto> result = memberTestRepository.searchPageTwoPhase(condition, pageRequest);
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("username").containsExactly("member3", "member2");
+        assertThat(result.getContent()).extracting("teamName").containsExactly("teamB", "teamA");
+
+        condition.setTeamName("teamB");
+        Page<MemberTeamDto> teamB = memberTestRepository.searchPageTwoPhase(condition, PageRequest.of(0, 2, Sort.by("age")));
+        assertThat(teamB.getTotalElements()).isEqualTo(3);
+        assertThat(teamB.getContent()).extracting("username").containsExactly("member3", "member4");
+    }
+
+    @Test
+    public void searchPageTwoPhaseBreaksTiesById() throws Exception {
+        Team team = new Team("tieTeam");
+        em.persist(team);
+        for (int i = 0; i < 7; i++) {
+            em.persist(new Member("tieMember" + i, 30, team));
+        }
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("tieTeam");
+
+        List<String> usernames = new ArrayList<>();
+        for (int page = 0; page < 4; page++) {
+            Page<MemberTeamDto> result = memberTestRepository.searchPageTwoPhase(condition,
+                    PageRequest.of(page, 2, Sort.by("age")));
+            result.getContent().forEach(dto -> usernames.add(dto.getUsername()));
+        }
+
+        assertThat(usernames).containsExactly("tieMember0", "tieMember1", "tieMember2", "tieMember3",
+                "tieMember4", "tieMember5", "tieMember6");
+    }
+
+    @Test
+    public void repositorySearchPageTwoPhaseTest() throws Exception {
+        Team team = new Team("twoPhaseTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("twoPhaseMember" + i, 10 + i, team));
+        }
+        em.persist(new Member("twoPhaseMember9", 19));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("twoPhaseTeam");
+        condition.setAgeGoe(11);
+
+        Page<MemberTeamDto> first = memberRepository.searchPageTwoPhase(condition, PageRequest.of(0, 3));
+        Page<MemberTeamDto> second = memberRepository.searchPageTwoPhase(condition, PageRequest.of(1, 3));
+
+        assertThat(first.getTotalElements()).isEqualTo(4);
+        assertThat(first.getContent()).extracting("username")
+                .containsExactly("twoPhaseMember1", "twoPhaseMember2", "twoPhaseMember3");
+        assertThat(first.getContent()).extracting("teamName").containsOnly("twoPhaseTeam");
+        assertThat(second.getContent()).extracting("username").containsExactly("twoPhaseMember4");
+        assertThat(memberRepository.searchPageTwoPhase(condition, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "age")))
+                .getContent()).extracting("username")
+                .containsExactly("twoPhaseMember4", "twoPhaseMember3", "twoPhaseMember2");
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)).getContent())
+                .containsExactlyInAnyOrderElementsOf(memberRepository.searchPageTwoPhase(condition, PageRequest.of(0, 10)).getContent());
+    }
+
+    @Test
+    public void boundedCountStopsAtLimitTest() throws Exception {
+        Team team = new Team("boundedTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("bounded" + i, i, team));
+        }
+        JPAQuery<?> countQuery = queryFactory
+                .selectFrom(QMember.member)
+                .join(QMember.member.team, QTeam.team)
+                .where(QTeam.team.name.eq("boundedTeam"));
+
+        assertThat(CountStrategy.bounded(3).count(null, countQuery)).isEqualTo(3);
+        assertThat(CountStrategy.bounded(10).count(null, countQuery)).isEqualTo(5);
+        assertThat(CountStrategy.exact().count(null, countQuery)).isEqualTo(5);
+
+        em.persist(new Member("bounded5", 4, team));
+        JPAQuery<?> grouped = queryFactory
+                .select(QMember.member.age)
+                .from(QMember.member)
+                .join(QMember.member.team, QTeam.team)
+                .where(QTeam.team.name.eq("boundedTeam"))
+                .groupBy(QMember.member.age);
+        assertThat(CountStrategy.exact().count(null, grouped)).isEqualTo(5);
+        assertThatThrownBy(() -> CountStrategy.bounded(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void applySlicingTest() throws Exception {
+        Team team = new Team("sliceTeam");
+        em.persist(team);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("slice" + i, i, team));
+        }
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("sliceTeam");
+
+        Slice<Member> first = memberTestRepository.searchSlice(condition, PageRequest.of(0, 2, Sort.by("age")));
+        assertThat(first.getContent()).extracting("username").containsExactly("slice0", "slice1");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<Member> last = memberTestRepository.searchSlice(condition, PageRequest.of(2, 2, Sort.by("age")));
+        assertThat(last.getContent()).extracting("username").containsExactly("slice4");
+        assertThat(last.hasNext()).isFalse();
+    }
+
     @Test
     public void querydsqlPredicateExecutorTest() throws Exception {
         QMember member = QMember.member;
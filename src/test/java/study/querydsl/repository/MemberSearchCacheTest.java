@@ -0,0 +1,125 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Hello;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchCacheTest {
+
+    MemberSearchCache cache = new MemberSearchCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), Duration.ZERO);
+    AtomicInteger loads = new AtomicInteger();
+    Function<MemberSearchCondition, List<MemberTeamDto>> loader = condition -> List.of(
+            new MemberTeamDto((long) loads.incrementAndGet(), "member1", 10, 1L, condition.getTeamName()));
+
+    @Test
+    public void equalConditionsHitCache() throws Exception {
+        cache.get(condition("teamA"), loader);
+        cache.get(condition(" teamA "), loader);
+
+        assertThat(loads).hasValue(1);
+        cache.get(condition("teamB"), loader);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void writableTransactionBypassesCache() throws Exception {
+        cache.get(condition("teamA"), loader);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            cache.get(condition("teamA"), loader);
+            cache.get(condition("teamB"), loader);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertThat(loads).hasValue(3);
+        cache.get(condition("teamB"), loader);
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    public void memberTeamAndBulkEventsInvalidate() throws Exception {
+        cache.get(condition("teamA"), loader);
+        cache.onEntityChanged(EntityChangedEvent.bulk(Member.class));
+        cache.get(condition("teamA"), loader);
+        cache.onEntityChanged(new EntityChangedEvent(Team.class, null, EntityChangedEvent.Type.UPDATE));
+        cache.get(condition("teamA"), loader);
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    public void otherEntitiesDoNotInvalidate() throws Exception {
+        cache.get(condition("teamA"), loader);
+        cache.onEntityChanged(EntityChangedEvent.bulk(Hello.class));
+        cache.get(condition("teamA"), loader);
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void resultInvalidatedWhileLoadingIsNotCached() throws Exception {
+        Function<MemberSearchCondition, List<MemberTeamDto>> racingLoader = condition -> {
+            List<MemberTeamDto> result = loader.apply(condition);
+            cache.invalidateAll();
+            return result;
+        };
+
+        cache.get(condition("teamA"), racingLoader);
+        cache.get(condition("teamA"), loader);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void resultReadWithinReplicaLagIsNotCached() throws Exception {
+        MemberSearchCache lagging = new MemberSearchCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1),
+                Duration.ofMinutes(1));
+        lagging.invalidateAll();
+
+        lagging.get(condition("teamA"), loader);
+        lagging.get(condition("teamA"), loader);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    public void loaderAlwaysGetsNormalizedCondition() throws Exception {
+        List<String> teamNames = new ArrayList<>();
+        Function<MemberSearchCondition, List<MemberTeamDto>> recording = condition -> {
+            teamNames.add(condition.getTeamName());
+            return List.of();
+        };
+
+        cache.get(condition(" teamA "), recording);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            cache.get(condition(" teamB "), recording);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertThat(teamNames).containsExactly("teamA", "teamB");
+    }
+
+    private MemberSearchCondition condition(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(20);
+        return condition;
+    }
+}
@@ -0,0 +1,87 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.JPQLQuery;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.service.MemberSearchService;
+import study.querydsl.support.ConcurrencyAssertions;
+import study.querydsl.support.QueryMetrics;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * 트랜잭션 밖에서 같은 조건으로 동시에 들어온 searchPageSimple 이 content 쿼리를 한 번만 실행하고
+ * 같은 Page 를 나눠 받는지, 기다리는 호출은 트랜잭션을 열지 않는지 확인한다.
+ */
+@SpringBootTest
+class MemberSearchCoalescingTest {
+
+    @Autowired
+    MemberSearchService memberSearchService;
+    @Autowired
+    DataSource dataSource;
+    @SpyBean
+    QueryMetrics queryMetrics;
+
+    @Test
+    public void identicalConcurrentSearchesRunOneQuery() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        // 첫 content 쿼리를 붙잡아 두고 나머지 호출이 모두 그 결과를 기다리게 한다
+        doAnswer(invocation -> {
+            fetches.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(queryMetrics).fetch(eq("MemberRepository.searchPageSimple"), any(JPQLQuery.class));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("coalesceTeam");
+        int callers = 4;
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(callers, task -> {
+            Thread thread = new Thread(task);
+            threads.add(thread);
+            return thread;
+        });
+        try {
+            List<Future<Page<MemberTeamDto>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> memberSearchService.searchPageSimple(condition, PageRequest.of(0, 10))));
+            }
+            ConcurrencyAssertions.awaitBlocked(threads);
+            // 붙잡힌 첫 호출의 읽기 트랜잭션만 커넥션을 들고 있다
+            assertThat(dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections())
+                    .isEqualTo(1);
+            release.countDown();
+
+            Page<MemberTeamDto> first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Page<MemberTeamDto>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+            }
+            assertThat(fetches).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
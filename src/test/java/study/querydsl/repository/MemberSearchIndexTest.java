@@ -0,0 +1,280 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberSearchService;
+import study.querydsl.support.QueryCounter;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.support.QueryCountAssertions.countQueries;
+
+/**
+ * 인덱스는 커밋된 데이터를 별도 커넥션으로 읽고 커밋 이벤트로 갱신되므로 테스트 트랜잭션 없이 실행하고 직접 정리한다.
+ */
+@SpringBootTest(properties = {
+        "querydsl.memory-index.enabled=true",
+        "querydsl.memory-index.rebuild-delay=1h"
+})
+class MemberSearchIndexTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    MemberSearchIndex memberSearchIndex;
+    @Autowired
+    MemberSearchTemplates memberSearchTemplates;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    MemberSearchService memberSearchService;
+
+    @BeforeEach
+    void setUp() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("indexTeamA");
+            Team teamB = new Team("indexTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 40; i++) {
+                em.persist(new Member("indexMember" + (i % 15), i, i % 3 == 0 ? teamB : teamA));
+            }
+            em.persist(new Member("indexMember0", 25));
+        });
+        memberSearchIndex.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'indexMember%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'indexTeam%'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void matchesJpaSearch() throws Exception {
+        for (MemberSearchCondition condition : conditions()) {
+            List<MemberTeamDto> indexed = memberSearchIndex.search(condition).orElseThrow();
+            List<MemberTeamDto> jpa = memberSearchTemplates.search(condition);
+
+            assertThat(indexed).as(condition.toString()).containsExactlyInAnyOrderElementsOf(jpa);
+        }
+    }
+
+    @Test
+    public void usernamePatternsMatchJpaSearch() throws Exception {
+        String[] patterns = {"Member1", "ber", "indexMember0", "em", "x!_%"};
+        for (String pattern : patterns) {
+            MemberSearchCondition contains = new MemberSearchCondition();
+            contains.setUsernameContains(pattern);
+            MemberSearchCondition startsWith = new MemberSearchCondition();
+            startsWith.setUsernameStartsWith(pattern);
+            startsWith.setTeamName("indexTeamA");
+
+            for (MemberSearchCondition condition : List.of(contains, startsWith)) {
+                assertThat(memberSearchIndex.search(condition).orElseThrow()).as(condition.toString())
+                        .containsExactlyInAnyOrderElementsOf(memberSearchTemplates.search(condition));
+            }
+        }
+    }
+
+    @Test
+    public void databaseSearchIsNarrowedByNgramCandidates() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("Member1");
+
+        assertThat(memberSearchIndex.usernameCandidates(condition).orElseThrow())
+                .hasSameSizeAs(memberSearchTemplates.search(condition));
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 100));
+        assertThat(page.getContent()).containsExactlyInAnyOrderElementsOf(memberSearchTemplates.search(condition));
+    }
+
+    @Test
+    public void ageLoeAtIntegerMaxValue() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(Integer.MAX_VALUE);
+
+        assertThat(memberSearchIndex.search(condition).orElseThrow())
+                .isNotEmpty()
+                .containsExactlyInAnyOrderElementsOf(memberSearchTemplates.search(condition));
+    }
+
+    @Test
+    public void endpointSearchesAreServedFromIndex() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("indexTeamA");
+        List<MemberTeamDto> expected = memberSearchTemplates.search(condition);
+
+        QueryCounter counter = countQueries(() -> {
+            assertThat(memberSearchService.search(condition)).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(memberSearchService.searchPageSimple(condition, PageRequest.of(0, 100)).getContent())
+                    .containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(memberSearchService.searchPageComplex(condition, PageRequest.of(0, 100), true).getContent())
+                    .containsExactlyInAnyOrderElementsOf(expected);
+        });
+
+        assertThat(counter.getTotal()).isZero();
+    }
+
+    /**
+     * 커밋 전(flush 후)부터 반영이 끝날 때까지는 후보 id 를 내지 않아야 DB 조회에서 새 행이 빠지지 않는다.
+     */
+    @Test
+    public void noCandidatesWhileWritesAreUnapplied() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("Member1");
+
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("indexMember1x", 77));
+            em.flush();
+            assertThat(CompletableFuture.supplyAsync(() -> memberSearchIndex.usernameCandidates(condition)).join())
+                    .isEmpty();
+            assertThat(CompletableFuture.supplyAsync(() -> memberSearchIndex.search(condition)).join())
+                    .isPresent();
+        });
+
+        assertThat(memberSearchIndex.usernameCandidates(condition).orElseThrow())
+                .hasSameSizeAs(memberSearchTemplates.search(condition));
+
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("indexMember1y", 78));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(memberSearchIndex.usernameCandidates(condition)).isPresent();
+    }
+
+    @Test
+    public void pagesInIdOrder() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("indexTeamA");
+        List<MemberTeamDto> all = memberSearchIndex.search(condition).orElseThrow();
+
+        Page<MemberTeamDto> page = memberSearchIndex.searchPage(condition, PageRequest.of(1, 10)).orElseThrow();
+
+        assertThat(page.getTotalElements()).isEqualTo(all.size());
+        assertThat(page.getContent()).containsExactlyElementsOf(all.subList(10, 20));
+    }
+
+    @Test
+    public void appliesCommittedWritesWithoutReload() throws Exception {
+        Long id = tx.execute(status -> {
+            Member member = new Member("indexMember99", 99);
+            em.persist(member);
+            return member.getId();
+        });
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("indexMember99");
+
+        assertThat(memberSearchIndex.isStale()).isFalse();
+        assertThat(memberSearchIndex.search(condition).orElseThrow()).extracting("age").containsExactly(99);
+
+        tx.executeWithoutResult(status -> em.find(Member.class, id).setAge(98));
+        assertThat(memberSearchIndex.search(condition).orElseThrow()).extracting("age").containsExactly(98);
+
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+        assertThat(memberSearchIndex.search(condition).orElseThrow()).isEmpty();
+        assertThat(memberSearchIndex.isStale()).isFalse();
+    }
+
+    @Test
+    public void ignoresRolledBackWrites() throws Exception {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("indexMember99", 99));
+            status.setRollbackOnly();
+        });
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("indexMember99");
+
+        assertThat(memberSearchIndex.search(condition).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    public void appliesTeamRename() throws Exception {
+        tx.executeWithoutResult(status -> em.createQuery("select t from Team t where t.name = 'indexTeamB'", Team.class)
+                .getSingleResult()
+                .setName("indexTeamC"));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("indexTeamC");
+
+        assertThat(memberSearchIndex.search(condition).orElseThrow())
+                .hasSize(14)
+                .containsExactlyInAnyOrderElementsOf(memberSearchTemplates.search(condition));
+    }
+
+    @Test
+    public void staleAfterBulkWriteUntilRebuilt() throws Exception {
+        tx.executeWithoutResult(status -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(100))
+                .where(member.username.eq("indexMember7"))
+                .execute());
+
+        assertThat(memberSearchIndex.isStale()).isTrue();
+        assertThat(memberSearchIndex.search(new MemberSearchCondition())).isEmpty();
+
+        memberSearchIndex.rebuild();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("indexMember7");
+        assertThat(memberSearchIndex.search(condition).orElseThrow()).extracting("age").containsExactly(107, 122, 137);
+    }
+
+    @Test
+    public void compactionKeepsResults() throws Exception {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("indexMember" + (i % 15), 50 + i));
+            }
+            em.createQuery("select m from Member m where m.username = 'indexMember3'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+
+        memberSearchIndex.compact();
+
+        matchesJpaSearch();
+        usernamePatternsMatchJpaSearch();
+    }
+
+    private List<MemberSearchCondition> conditions() {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        String[] usernames = {null, "indexMember0", "indexMember7", "noSuchMember"};
+        String[] teamNames = {null, "indexTeamA", "indexTeamB", "noSuchTeam"};
+        Integer[][] ageRanges = {{null, null}, {10, null}, {null, 20}, {15, 30}, {30, 15}};
+        for (String username : usernames) {
+            for (String teamName : teamNames) {
+                for (Integer[] ages : ageRanges) {
+                    MemberSearchCondition condition = new MemberSearchCondition();
+                    condition.setUsername(username);
+                    condition.setTeamName(teamName);
+                    condition.setAgeGoe(ages[0]);
+                    condition.setAgeLoe(ages[1]);
+                    conditions.add(condition);
+                }
+            }
+        }
+        return conditions;
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.QueryCounter;
+import study.querydsl.support.QueryPlanAdvisor;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.support.QueryCountAssertions.countQueries;
+
+/**
+ * MemberRepository.search 가 만드는 조건 조합(shape)마다 실행 계획을 확인한다.
+ * 조건이 하나도 없는 shape 는 원래 전체 조회이므로 제외한다.
+ * username like 조건만 있는 shape 는 메모리 인덱스(querydsl.memory-index.enabled)가 꺼져 있으면
+ * like '%x%' 를 인덱스로 풀 수 없어 전체 스캔이 허용된다.
+ */
+@SpringBootTest
+@Transactional
+class MemberSearchPlanTest {
+
+    static final int ROW_THRESHOLD = 1000;
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Team team = new Team("planTeam" + i);
+            em.persist(team);
+            teams.add(team);
+        }
+        for (int i = 0; i < ROW_THRESHOLD * 2; i++) {
+            em.persist(new Member("planMember" + i, i % 100, teams.get(i % teams.size())));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void searchShapesUseIndexes() throws Exception {
+        QueryPlanAdvisor advisor = new QueryPlanAdvisor(em, ROW_THRESHOLD);
+
+        // bit 1~8 은 인덱스를 탈 수 있는 조건(username, teamName, ageGoe, ageLoe). like 조건만 있는 shape 는 검사하지 않는다
+        for (int shape = 1; shape < 64; shape++) {
+            if ((shape & 15) == 0) {
+                continue;
+            }
+            MemberSearchCondition condition = new MemberSearchCondition();
+            List<Object> params = new ArrayList<>();
+            if ((shape & 1) != 0) {
+                condition.setUsername("planMember7");
+                params.add("planMember7");
+            }
+            if ((shape & 16) != 0) {
+                condition.setUsernameContains("ember7");
+                params.add("%ember7%");
+            }
+            if ((shape & 32) != 0) {
+                condition.setUsernameStartsWith("planMember7");
+                params.add("planMember7%");
+            }
+            if ((shape & 2) != 0) {
+                condition.setTeamName("planTeam3");
+                params.add("planTeam3");
+            }
+            if ((shape & 4) != 0) {
+                condition.setAgeGoe(30);
+                params.add(30);
+            }
+            if ((shape & 8) != 0) {
+                condition.setAgeLoe(32);
+                params.add(32);
+            }
+
+            QueryCounter counter = countQueries(() -> memberRepository.search(condition));
+            for (String sql : counter.getCounts().keySet()) {
+                advisor.assertNoFullScan(sql, params);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 미리 만든 JPQL 이 모든 조건 조합(shape)에서 Querydsl 빌더(searchByBuilder)와 같은 행을 돌려주는지 확인한다.
+ */
+@SpringBootTest
+@Transactional
+class MemberSearchTemplatesTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberSearchTemplates memberSearchTemplates;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("tplTeamA");
+        Team teamB = new Team("tplTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 30; i++) {
+            em.persist(new Member("tplMember" + (i % 10), i, i % 2 == 0 ? teamA : teamB));
+        }
+        em.persist(new Member("tplMember3", 12));
+        em.persist(new Member("tpl_x%1!", 12, teamA));
+        em.persist(new Member("tplAx01", 12, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void everyShapeMatchesQuerydslBuilder() throws Exception {
+        String[][] values = {
+                // username, usernameContains, usernameStartsWith, teamName
+                {"tplMember3", "ber", "tplMem", "tplTeamA"},
+                {"tpl_x%1!", "_x%", "tpl_", "tplTeamA"},
+                {"noSuchMember", "x%1!", "tplA", "noSuchTeam"}
+        };
+        for (String[] value : values) {
+            for (int shape = 0; shape < 64; shape++) {
+                MemberSearchCondition condition = new MemberSearchCondition();
+                if ((shape & 1) != 0) {
+                    condition.setUsername(value[0]);
+                }
+                if ((shape & 2) != 0) {
+                    condition.setUsernameContains(value[1]);
+                }
+                if ((shape & 4) != 0) {
+                    condition.setUsernameStartsWith(value[2]);
+                }
+                if ((shape & 8) != 0) {
+                    condition.setTeamName(value[3]);
+                }
+                if ((shape & 16) != 0) {
+                    condition.setAgeGoe(5);
+                }
+                if ((shape & 32) != 0) {
+                    condition.setAgeLoe(20);
+                }
+
+                List<MemberTeamDto> expected = memberJpaRepository.searchByBuilder(condition);
+                assertThat(memberSearchTemplates.search(condition)).as(condition.toString())
+                        .containsExactlyInAnyOrderElementsOf(expected);
+            }
+        }
+    }
+}
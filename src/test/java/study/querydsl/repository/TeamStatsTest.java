@@ -0,0 +1,179 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.Dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.QueryCountAssertions;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 커밋 후에 반영되므로 테스트 트랜잭션 없이 실행하고 직접 정리한다.
+ * 다른 테스트가 이벤트 없이 지운 데이터가 남아 있을 수 있어 시작할 때 테이블에서 다시 읽는다.
+ * 쓰기 트랜잭션 안에서는 테이블을 집계하므로 그 결과와 메모리 집계를 비교한다.
+ */
+@SpringBootTest(properties = "querydsl.team-stats.enabled=true")
+class TeamStatsTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    TeamStats teamStats;
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+    Member member4;
+
+    @BeforeEach
+    void setUp() {
+        teamStats.rebuild();
+        tx.executeWithoutResult(status -> {
+            teamA = new Team("statsTeamA");
+            teamB = new Team("statsTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            member1 = new Member("stats1", 10, teamA);
+            em.persist(member1);
+            em.persist(new Member("stats2", 20, teamA));
+            em.persist(new Member("stats3", 30, teamB));
+            member4 = new Member("stats4", 40, teamB);
+            em.persist(member4);
+            em.persist(new Member("stats5", 50));
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            queryFactory.delete(member).where(member.username.like("stats%")).execute();
+            queryFactory.delete(team).where(team.name.like("statsTeam%")).execute();
+        });
+    }
+
+    @Test
+    public void readsWithoutQueries() throws Exception {
+        TeamStatsDto[] holder = new TeamStatsDto[1];
+        assertThat(QueryCountAssertions.countQueries(() -> {
+            holder[0] = teamStatsRepository.findByTeamName("statsTeamA").orElseThrow();
+            teamStatsRepository.findAll();
+            teamStatsRepository.overall();
+        }).getTotal()).isZero();
+
+        TeamStatsDto stats = holder[0];
+
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getAgeSum()).isEqualTo(30);
+        assertThat(stats.getAgeAvg()).isEqualTo(15.0);
+        assertThat(stats.getAgeMin()).isEqualTo(10);
+        assertThat(stats.getAgeMax()).isEqualTo(20);
+        assertMatchesTable();
+    }
+
+    @Test
+    public void followsUpdatesAndDeletes() throws Exception {
+        tx.executeWithoutResult(status -> {
+            Member moved = em.find(Member.class, member1.getId());
+            moved.setAge(45);
+            moved.setTeam(em.find(Team.class, teamB.getId()));
+            em.remove(em.find(Member.class, member4.getId()));
+        });
+
+        TeamStatsDto stats = teamStatsRepository.findByTeamName("statsTeamB").orElseThrow();
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getAgeMin()).isEqualTo(30);
+        assertThat(stats.getAgeMax()).isEqualTo(45);
+        assertThat(teamStatsRepository.findByTeamName("statsTeamA").orElseThrow().getAgeMin()).isEqualTo(20);
+        assertMatchesTable();
+    }
+
+    @Test
+    public void rollbackIsIgnored() throws Exception {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("stats6", 99, em.find(Team.class, teamA.getId())));
+            status.setRollbackOnly();
+        });
+
+        assertThat(teamStatsRepository.findByTeamName("statsTeamA").orElseThrow().getAgeMax()).isEqualTo(20);
+        assertMatchesTable();
+    }
+
+    @Test
+    public void rebuildsAfterBulkUpdate() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            tx.executeWithoutResult(status -> queryFactory
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .where(member.username.like("stats%"))
+                    .execute());
+        }
+
+        // 다시 읽기 전에는 막히지 않고 테이블 집계로 답한다
+        assertThat(teamStatsRepository.findByTeamName("statsTeamA").orElseThrow().getAgeSum()).isEqualTo(36);
+
+        teamStats.rebuild();
+        assertThat(teamStats.isLoaded()).isTrue();
+        assertThat(QueryCountAssertions.countQueries(() ->
+                assertThat(teamStatsRepository.findByTeamName("statsTeamA").orElseThrow().getAgeSum()).isEqualTo(36)
+        ).getTotal()).isZero();
+        assertMatchesTable();
+    }
+
+    @Test
+    public void followsManyInsertsAndDeletes() throws Exception {
+        List<Long> ids = tx.execute(status -> {
+            Team team = em.find(Team.class, teamA.getId());
+            List<Long> created = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                Member added = new Member("stats" + (100 + i), i % 70, i % 2 == 0 ? team : null);
+                em.persist(added);
+                created.add(added.getId());
+            }
+            return created;
+        });
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < ids.size(); i += 3) {
+                em.remove(em.find(Member.class, ids.get(i)));
+            }
+        });
+
+        assertMatchesTable();
+    }
+
+    private void assertMatchesTable() {
+        List<TeamStatsDto> fromTable = tx.execute(status -> teamStatsRepository.findAll());
+        List<TeamStatsDto> fromMemory = teamStatsRepository.findAll();
+        assertThat(fromMemory).hasSameSizeAs(fromTable);
+        for (int i = 0; i < fromTable.size(); i++) {
+            assertSameStats(fromMemory.get(i), fromTable.get(i));
+        }
+        assertSameStats(teamStatsRepository.overall(), tx.execute(status -> teamStatsRepository.overall()));
+    }
+
+    private void assertSameStats(TeamStatsDto actual, TeamStatsDto expected) {
+        assertThat(actual).usingRecursiveComparison().ignoringFields("ageAvg").isEqualTo(expected);
+        if (expected.getAgeAvg() != null) {
+            assertThat(actual.getAgeAvg()).isCloseTo(expected.getAgeAvg(), within(1e-9));
+        }
+    }
+}
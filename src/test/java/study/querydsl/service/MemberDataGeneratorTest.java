@@ -0,0 +1,77 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JDBC 로 바로 커밋하므로 테스트 트랜잭션 없이 실행하고 직접 정리한다.
+ */
+@SpringBootTest
+class MemberDataGeneratorTest {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    ApplicationEventPublisher publisher;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    EntityManagerFactory emf;
+
+    long[] range;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from member where member_id between ? and ?", range[0], range[1]);
+        jdbcTemplate.update("delete from team where name like 'loadTeam%'");
+    }
+
+    @Test
+    public void generateSkewedMembers() throws Exception {
+        MemberDataGenerator generator = new MemberDataGenerator(jdbcTemplate, publisher, emf,
+                5, 2000, 3, 100, 1.0, 10, 60, 35, 12, 0, 7L);
+
+        range = generator.generate();
+
+        assertThat(range[1] - range[0] + 1).isEqualTo(2000);
+        List<Long> teamSizes = jdbcTemplate.queryForList(
+                "select count(*) from member m join team t on m.team_id = t.id" +
+                        " where t.name like 'loadTeam%' group by t.id order by t.id", Long.class);
+        assertThat(teamSizes).hasSize(5);
+        assertThat(teamSizes.stream().mapToLong(Long::longValue).sum()).isEqualTo(2000);
+        assertThat(teamSizes.get(0)).isGreaterThan(teamSizes.get(4) * 2);
+
+        Integer minAge = jdbcTemplate.queryForObject(
+                "select min(age) from member where member_id between ? and ?", Integer.class, range[0], range[1]);
+        Integer maxAge = jdbcTemplate.queryForObject(
+                "select max(age) from member where member_id between ? and ?", Integer.class, range[0], range[1]);
+        assertThat(minAge).isGreaterThanOrEqualTo(10);
+        assertThat(maxAge).isLessThanOrEqualTo(60);
+
+        //하이버네이트가 이미 들고 있던 id 블록이든 새로 받은 블록이든 생성한 범위와 겹치지 않아야 한다
+        for (int i = 0; i < 60; i++) {
+            Long nextId = tx.execute(status -> {
+                Member member = new Member("afterGenerate", 20);
+                em.persist(member);
+                em.flush();
+                status.setRollbackOnly();
+                return member.getId();
+            });
+            assertThat(nextId).isNotBetween(range[0], range[1]);
+        }
+    }
+}
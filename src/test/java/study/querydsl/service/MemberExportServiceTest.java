@@ -0,0 +1,79 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberExportServiceTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MemberExportService memberExportService;
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    Long teamId;
+
+    @BeforeEach
+    void setUp() {
+        Team team = new Team("export,\"Team\"");
+        em.persist(team);
+        em.persist(new Member("exportPlain", 10, team));
+        em.persist(new Member("exportComma,1", 20, team));
+        em.persist(new Member("exportQuote\"2\"", 30, team));
+        em.persist(new Member("exportLine\n3", 40));
+        em.flush();
+        em.clear();
+        teamId = team.getId();
+        condition.setUsernameStartsWith("export");
+    }
+
+    @Test
+    public void csvEscapesSpecialCharacters() throws Exception {
+        String csv = export(MemberExportService.Format.CSV);
+
+        assertThat(csv).startsWith("memberId,username,age,teamId,teamName\n");
+        assertThat(csv).contains(",exportPlain,10," + teamId + ",\"export,\"\"Team\"\"\"\n");
+        assertThat(csv).contains(",\"exportComma,1\",20,");
+        assertThat(csv).contains(",\"exportQuote\"\"2\"\"\",30,");
+        assertThat(csv).contains(",\"exportLine\n3\",40,,\n");
+    }
+
+    @Test
+    public void ndjsonWritesOneObjectPerLine() throws Exception {
+        String[] lines = export(MemberExportService.Format.NDJSON).split("\n");
+
+        assertThat(lines).hasSize(4);
+        for (String line : lines) {
+            JsonNode row = objectMapper.readTree(line);
+            assertThat(row.get("username").asText()).startsWith("export");
+        }
+        JsonNode noTeam = objectMapper.readTree(lines[3]);
+        assertThat(noTeam.get("username").asText()).isEqualTo("exportLine\n3");
+        assertThat(noTeam.get("teamId").isNull()).isTrue();
+    }
+
+    private String export(MemberExportService.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = memberExportService.export(condition, format, out);
+        assertThat(count).isEqualTo(4);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
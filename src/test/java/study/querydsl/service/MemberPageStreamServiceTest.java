@@ -0,0 +1,141 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.Dto.MemberSearchCondition;
+import study.querydsl.Dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.QueryCountAssertions;
+import study.querydsl.support.QueryCounter;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberPageStreamServiceTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberPageStreamService memberPageStreamService;
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+
+    @BeforeEach
+    void setUp() {
+        Team team = new Team("streamTeam");
+        em.persist(team);
+        em.persist(new Member("stream1", 10, team));
+        em.persist(new Member("stream2", 20, team));
+        em.persist(new Member("stream3", 30, team));
+        em.persist(new Member("stream4", 40));
+        em.flush();
+        em.clear();
+        condition.setTeamName("streamTeam");
+    }
+
+    @Test
+    public void writesSamePageAsSearchPageComplex() throws Exception {
+        PageRequest pageable = PageRequest.of(0, 2);
+        JsonNode page = objectMapper.readTree(write(pageable));
+        Page<MemberTeamDto> expected = memberRepository.searchPageComplex(condition, pageable);
+
+        assertThat(page.get("content")).hasSize(2);
+        for (int i = 0; i < 2; i++) {
+            JsonNode row = page.get("content").get(i);
+            MemberTeamDto dto = expected.getContent().get(i);
+            assertThat(row.get("memberId").asLong()).isEqualTo(dto.getMemberId());
+            assertThat(row.get("username").asText()).isEqualTo(dto.getUsername());
+            assertThat(row.get("age").asInt()).isEqualTo(dto.getAge());
+            assertThat(row.get("teamId").asLong()).isEqualTo(dto.getTeamId());
+            assertThat(row.get("teamName").asText()).isEqualTo("streamTeam");
+        }
+        assertThat(page.get("page").asInt()).isEqualTo(0);
+        assertThat(page.get("size").asInt()).isEqualTo(2);
+        assertThat(page.get("numberOfElements").asInt()).isEqualTo(2);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(3);
+        assertThat(page.get("totalPages").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    public void lastPageSkipsCountQuery() throws Exception {
+        String[] body = new String[1];
+        QueryCounter counter = QueryCountAssertions.countQueries(() -> body[0] = write(PageRequest.of(1, 2)));
+        JsonNode page = objectMapper.readTree(body[0]);
+
+        assertThat(counter.getTotal()).isEqualTo(1);
+        assertThat(page.get("content")).hasSize(1);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    public void writesNullTeam() throws Exception {
+        MemberSearchCondition noTeam = new MemberSearchCondition();
+        noTeam.setUsername("stream4");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        memberPageStreamService.writePage(noTeam, PageRequest.of(0, 20), out);
+        JsonNode row = objectMapper.readTree(out.toByteArray()).get("content").get(0);
+
+        assertThat(row.get("teamId").isNull()).isTrue();
+        assertThat(row.get("teamName").isNull()).isTrue();
+    }
+
+    @Test
+    public void gzipRoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            memberPageStreamService.writePage(condition, PageRequest.of(0, 20), gzip);
+        }
+        JsonNode page = objectMapper.readTree(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+
+        assertThat(page.get("content")).hasSize(3);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    public void useGzipHonorsQualityValues() throws Exception {
+        assertThat(memberPageStreamService.useGzip(null)).isFalse();
+        assertThat(memberPageStreamService.useGzip("gzip, deflate, br")).isTrue();
+        assertThat(memberPageStreamService.useGzip("GZIP")).isTrue();
+        assertThat(memberPageStreamService.useGzip("x-gzip;q=0.5")).isTrue();
+        assertThat(memberPageStreamService.useGzip("*")).isTrue();
+        assertThat(memberPageStreamService.useGzip("identity")).isFalse();
+        assertThat(memberPageStreamService.useGzip("gzip;q=0")).isFalse();
+        assertThat(memberPageStreamService.useGzip("gzip; q=0.0, deflate")).isFalse();
+        assertThat(memberPageStreamService.useGzip("*, gzip;q=0")).isFalse();
+        assertThat(memberPageStreamService.useGzip("*;q=0")).isFalse();
+        assertThat(memberPageStreamService.useGzip("gzip;q=abc")).isFalse();
+    }
+
+    private String write(PageRequest pageable) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            memberPageStreamService.writePage(condition, pageable, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachedCountStrategyTest {
+
+    MutableClock clock = new MutableClock();
+    AtomicInteger counts = new AtomicInteger();
+    CachedCountStrategy strategy = new CachedCountStrategy(
+            (key, query) -> counts.incrementAndGet(), Duration.ofSeconds(30), 100, clock);
+
+    @Test
+    public void reusesCountUntilTtl() throws Exception {
+        assertThat(strategy.count("teamA", null)).isEqualTo(1);
+        assertThat(strategy.count("teamA", null)).isEqualTo(1);
+        assertThat(strategy.count("teamB", null)).isEqualTo(2);
+
+        clock.advance(Duration.ofSeconds(31));
+        assertThat(strategy.count("teamA", null)).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidateAllDropsCounts() throws Exception {
+        strategy.count("teamA", null);
+        strategy.invalidateAll();
+
+        assertThat(strategy.count("teamA", null)).isEqualTo(2);
+    }
+
+    @Test
+    public void writableTransactionBypassesCache() throws Exception {
+        strategy.count("teamA", null);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThat(strategy.count("teamA", null)).isEqualTo(2);
+            assertThat(strategy.count("teamA", null)).isEqualTo(3);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertThat(strategy.count("teamA", null)).isEqualTo(1);
+    }
+
+    @Test
+    public void countInvalidatedWhileLoadingIsNotCached() throws Exception {
+        CachedCountStrategy[] holder = new CachedCountStrategy[1];
+        holder[0] = new CachedCountStrategy((key, query) -> {
+            int count = counts.incrementAndGet();
+            holder[0].invalidateAll();
+            return count;
+        }, Duration.ofSeconds(30), 100, clock);
+
+        assertThat(holder[0].count("teamA", null)).isEqualTo(1);
+        assertThat(holder[0].count("teamA", null)).isEqualTo(2);
+    }
+
+    @Test
+    public void countWithinReplicaLagAfterInvalidationIsNotCached() throws Exception {
+        CachedCountStrategy lagging = new CachedCountStrategy(
+                (key, query) -> counts.incrementAndGet(), Duration.ofSeconds(30), 100, Duration.ofMinutes(1), clock);
+        lagging.count("teamA", null);
+        assertThat(lagging.count("teamA", null)).isEqualTo(1);
+
+        lagging.invalidateAll();
+        assertThat(lagging.count("teamA", null)).isEqualTo(2);
+        assertThat(lagging.count("teamA", null)).isEqualTo(3);
+    }
+
+    static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2022-05-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
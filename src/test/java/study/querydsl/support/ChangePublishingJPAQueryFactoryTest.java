@@ -0,0 +1,60 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+@RecordApplicationEvents
+class ChangePublishingJPAQueryFactoryTest {
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+    @Autowired
+    ApplicationEvents events;
+
+    @Test
+    public void bulkUpdatePublishesWrittenAttributes() throws Exception {
+        queryFactory.update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.username.eq("nobody"))
+                .execute();
+
+        EntityChangedEvent event = bulkEvent();
+        assertThat(event.getEntityType()).isEqualTo(Member.class);
+        assertThat(event.mayHaveWritten("age")).isTrue();
+        assertThat(event.mayHaveWritten("username")).isFalse();
+    }
+
+    @Test
+    public void bulkDeleteWritesNoAttributes() throws Exception {
+        queryFactory.delete(member)
+                .where(member.username.eq("nobody"))
+                .execute();
+
+        assertThat(bulkEvent().mayHaveWritten("username")).isFalse();
+    }
+
+    @Test
+    public void unknownBulkMayHaveWrittenAnything() throws Exception {
+        assertThat(EntityChangedEvent.bulk(Member.class).mayHaveWritten("username")).isTrue();
+    }
+
+    private EntityChangedEvent bulkEvent() {
+        return events.stream(EntityChangedEvent.class)
+                .filter(event -> event.getType() == EntityChangedEvent.Type.BULK)
+                .reduce((first, second) -> second)
+                .orElseThrow();
+    }
+}
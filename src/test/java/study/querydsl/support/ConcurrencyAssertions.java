@@ -0,0 +1,31 @@
+package study.querydsl.support;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 동시성 테스트 헬퍼. sleep 으로 다른 스레드가 자리 잡기를 추측하지 않고 스레드 상태를 직접 확인한다.
+ */
+public final class ConcurrencyAssertions {
+
+    private ConcurrencyAssertions() {
+    }
+
+    /**
+     * 스레드가 모두 (latch, join 등에서) 대기 상태가 될 때까지 기다린다. 5초 안에 안 되면 실패한다.
+     */
+    public static void awaitBlocked(Collection<Thread> threads) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!threads.stream().allMatch(ConcurrencyAssertions::isBlocked)) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("threads did not block: " + threads);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static boolean isBlocked(Thread thread) {
+        Thread.State state = thread.getState();
+        return state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+    }
+}
@@ -0,0 +1,130 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class CountQueriesTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    JPQLTemplates templates;
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Test
+    public void unreferencedToOneLeftJoinIsRemoved() throws Exception {
+        JPAQuery<Member> query = new JPAQuery<Member>()
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.age.goe(10))
+                .orderBy(member.id.desc());
+
+        String jpql = CountQueries.derive(null, JPQLTemplates.DEFAULT, query).toString();
+
+        assertThat(jpql).doesNotContain("team", "order by", "fetch");
+        assertThat(jpql).contains("where member1.age >= ?1");
+    }
+
+    @Test
+    public void referencedJoinIsKept() throws Exception {
+        JPAQuery<Member> query = new JPAQuery<Member>()
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("teamA"));
+
+        String jpql = CountQueries.derive(null, JPQLTemplates.DEFAULT, query).toString();
+
+        assertThat(jpql).contains("left join member1.team as team");
+    }
+
+    @Test
+    public void innerJoinIsKept() throws Exception {
+        JPAQuery<Member> query = new JPAQuery<Member>()
+                .select(member)
+                .from(member)
+                .join(member.team, team);
+
+        String jpql = CountQueries.derive(null, JPQLTemplates.DEFAULT, query).toString();
+
+        assertThat(jpql).contains("inner join member1.team as team");
+    }
+
+    @Test
+    public void distinctProjectionIsKept() throws Exception {
+        JPAQuery<String> query = new JPAQuery<Member>()
+                .select(team.name)
+                .distinct()
+                .from(member)
+                .leftJoin(member.team, team);
+
+        String jpql = CountQueries.derive(null, JPQLTemplates.DEFAULT, query).toString();
+
+        assertThat(jpql).startsWith("select distinct team.name");
+        assertThat(jpql).contains("left join member1.team as team");
+    }
+
+    /**
+     * 파생한 count 가 content 쿼리의 실제 행 수와 같아야 한다. distinct 는 projection 에 따라 결과 행 수가 달라진다.
+     */
+    @Test
+    public void derivedCountMatchesResultSize() throws Exception {
+        Team teamA = new Team("countQueriesTeamA");
+        Team teamB = new Team("countQueriesTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 3; i++) {
+            em.persist(new Member("countQueries" + i, 10, teamA));
+        }
+        em.persist(new Member("countQueries3", 20, teamB));
+        em.persist(new Member("countQueries4", 20, teamB));
+        em.persist(new Member("countQueries5", 30));
+        em.flush();
+        em.clear();
+
+        List<JPAQuery<?>> queries = List.of(
+                queryFactory.select(member).from(member)
+                        .leftJoin(member.team, team)
+                        .where(member.username.startsWith("countQueries")),
+                queryFactory.select(member.team).distinct().from(member)
+                        .where(member.username.startsWith("countQueries")),
+                queryFactory.select(team.name).distinct().from(member)
+                        .leftJoin(member.team, team)
+                        .where(member.username.startsWith("countQueries")),
+                queryFactory.select(member.age).distinct().from(member)
+                        .where(member.username.startsWith("countQueries")),
+                queryFactory.selectFrom(team).distinct()
+                        .join(team.members, member)
+                        .where(member.username.startsWith("countQueries")),
+                queryFactory.select(member.age).from(member)
+                        .where(member.username.startsWith("countQueries"))
+                        .groupBy(member.age));
+        long[] expected = {6, 2, 3, 3, 2, 3};
+
+        for (int i = 0; i < queries.size(); i++) {
+            JPAQuery<?> query = queries.get(i);
+            long derived = CountQueries.count(CountQueries.derive(em, templates, query));
+
+            assertThat(query.fetch()).as(query.toString()).hasSize((int) expected[i]);
+            assertThat(derived).as(query.toString()).isEqualTo(expected[i]);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountQueryExecutorTest {
+
+    NoopTransactionManager transactionManager = new NoopTransactionManager();
+    ExecutorService pool = Executors.newSingleThreadExecutor(task -> new Thread(task, "count-test"));
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void countRunsOnExecutorInReadOnlyTransaction() throws Exception {
+        CountQueryExecutor executor = new CountQueryExecutor(pool, transactionManager, 1);
+        AtomicReference<String> countThread = new AtomicReference<>();
+        AtomicBoolean countReadOnly = new AtomicBoolean();
+
+        Page<Integer> page = executor.getPage(PageRequest.of(0, 2), () -> List.of(1, 2), () -> {
+            countThread.set(Thread.currentThread().getName());
+            countReadOnly.set(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            return 10;
+        }, true);
+
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(countThread.get()).isEqualTo("count-test");
+        assertThat(countReadOnly).isTrue();
+    }
+
+    /**
+     * 호출한 쪽이 커넥션을 쥔 채 count 의 두 번째 커넥션을 기다리지 않도록, 트랜잭션 안에서는 읽기 전용이어도 순차 실행한다.
+     */
+    @Test
+    public void transactionalCallerCountsOnCallerThread() throws Exception {
+        CountQueryExecutor executor = new CountQueryExecutor(pool, transactionManager, 1);
+        for (boolean readOnly : new boolean[]{false, true}) {
+            AtomicReference<String> countThread = new AtomicReference<>();
+            TransactionTemplate callerTx = new TransactionTemplate(transactionManager);
+            callerTx.setReadOnly(readOnly);
+
+            Page<Integer> page = callerTx.execute(status ->
+                    executor.getPage(PageRequest.of(0, 2), () -> List.of(1, 2), () -> {
+                        countThread.set(Thread.currentThread().getName());
+                        return 10;
+                    }, true));
+
+            assertThat(page.getTotalElements()).isEqualTo(10);
+            assertThat(countThread.get()).isEqualTo(Thread.currentThread().getName());
+        }
+    }
+
+    @Test
+    public void countsBeyondLimitRunOnCallerThread() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        CountQueryExecutor executor = new CountQueryExecutor(queued::add, transactionManager, 1);
+        AtomicReference<String> secondCountThread = new AtomicReference<>();
+
+        // 첫 count 는 필요 없어 취소됐지만 아직 큐에서 실행되지 않아 permit 을 쥐고 있다
+        executor.getPage(PageRequest.of(0, 5), () -> List.of(1, 2), () -> 10, true);
+        Page<Integer> page = executor.getPage(PageRequest.of(0, 2), () -> List.of(1, 2), () -> {
+            secondCountThread.set(Thread.currentThread().getName());
+            return 10;
+        }, true);
+
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(secondCountThread.get()).isEqualTo(Thread.currentThread().getName());
+        assertThat(queued).hasSize(1);
+    }
+
+    @Test
+    public void unneededCountIsCancelled() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        CountQueryExecutor executor = new CountQueryExecutor(queued::add, transactionManager, 1);
+        AtomicInteger counts = new AtomicInteger();
+
+        Page<Integer> page = executor.getPage(PageRequest.of(0, 5), () -> List.of(1, 2), counts::incrementAndGet, true);
+        queued.forEach(Runnable::run);
+
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(queued).hasSize(1);
+        assertThat(counts).hasValue(0);
+    }
+
+    /**
+     * 커넥션 없이 트랜잭션 동기화(읽기 전용 여부 등)만 흉내 낸다.
+     */
+    static class NoopTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
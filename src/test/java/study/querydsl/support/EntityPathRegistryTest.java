@@ -0,0 +1,38 @@
+package study.querydsl.support;
+
+import com.querydsl.core.types.dsl.PathBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class EntityPathRegistryTest {
+
+    @Autowired
+    EntityPathRegistry entityPathRegistry;
+
+    @Test
+    public void pathIsCreatedOncePerDomainClass() throws Exception {
+        PathBuilder<Member> path = entityPathRegistry.pathBuilder(Member.class);
+
+        assertThat(entityPathRegistry.pathBuilder(Member.class)).isSameAs(path);
+        assertThat(path.getType()).isEqualTo(Member.class);
+        assertThat(path.getMetadata()).isEqualTo(QMember.member.getMetadata());
+        assertThat(entityPathRegistry.pathBuilder(Team.class)).isNotSameAs(path);
+    }
+
+    @Test
+    public void querydslIsSharedAndUsesSamePath() throws Exception {
+        Querydsl querydsl = entityPathRegistry.querydsl(Member.class);
+
+        assertThat(entityPathRegistry.querydsl(Member.class)).isSameAs(querydsl);
+        assertThat(querydsl.createQuery().from(entityPathRegistry.pathBuilder(Member.class)).toString())
+                .contains("from Member member1");
+    }
+}
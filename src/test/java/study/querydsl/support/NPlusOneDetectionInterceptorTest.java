@@ -0,0 +1,38 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NPlusOneDetectionInterceptorTest {
+
+    NPlusOneDetectionInterceptor interceptor = new NPlusOneDetectionInterceptor(5);
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/members/async");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @AfterEach
+    void tearDown() {
+        QueryCountInspector.stop();
+    }
+
+    @Test
+    public void asyncStartClearsRequestThreadCounter() throws Exception {
+        interceptor.preHandle(request, response, new Object());
+
+        interceptor.afterConcurrentHandlingStarted(request, response, new Object());
+
+        assertThat(QueryCountInspector.stop()).isNull();
+    }
+
+    @Test
+    public void completionClearsCounter() throws Exception {
+        interceptor.preHandle(request, response, new Object());
+
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertThat(QueryCountInspector.stop()).isNull();
+    }
+}
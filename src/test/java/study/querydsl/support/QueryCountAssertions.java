@@ -0,0 +1,38 @@
+package study.querydsl.support;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * N+1 회귀 방지용 테스트 헬퍼. 같은 SQL 문장이 maxRepeats 번을 넘게 실행되면 실패한다.
+ */
+public final class QueryCountAssertions {
+
+    private QueryCountAssertions() {
+    }
+
+    public static QueryCounter countQueries(Runnable work) {
+        QueryCountInspector.start();
+        try {
+            work.run();
+        } catch (RuntimeException | Error e) {
+            QueryCountInspector.stop();
+            throw e;
+        }
+        return QueryCountInspector.stop();
+    }
+
+    public static QueryCounter assertNoRepeatedQueries(Runnable work) {
+        return assertMaxRepeats(work, 1);
+    }
+
+    public static QueryCounter assertMaxRepeats(Runnable work, int maxRepeats) {
+        QueryCounter counter = countQueries(work);
+        Map<String, Integer> repeated = counter.repeatedStatements(maxRepeats + 1);
+        assertThat(repeated)
+                .as("statements executed more than %d times (possible N+1)", maxRepeats)
+                .isEmpty();
+        return counter;
+    }
+}
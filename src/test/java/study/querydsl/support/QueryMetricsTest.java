@@ -0,0 +1,61 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+class QueryMetricsTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    QueryMetrics metrics = new QueryMetrics(registry, Duration.ofHours(1));
+    JPAQuery<Member> query = new JPAQuery<Member>().select(member).from(member);
+
+    @Test
+    public void metersAreRegisteredOncePerShape() throws Exception {
+        metrics.record("shapeA", QueryMetrics.CONTENT, query, () -> List.of(1, 2, 3), List::size);
+        int meters = registry.getMeters().size();
+
+        metrics.record("shapeA", QueryMetrics.CONTENT, query, () -> List.of(1), List::size);
+
+        assertThat(registry.getMeters()).hasSize(meters);
+        assertThat(registry.get("querydsl.query").tags("shape", "shapeA", "type", "content").timer().count())
+                .isEqualTo(2);
+        assertThat(registry.get("querydsl.query.rows").tag("shape", "shapeA").summary().totalAmount())
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void cachedCountsAreNotTimed() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CachedCountStrategy strategy = new CachedCountStrategy(
+                (key, countQuery) -> queries.incrementAndGet(), Duration.ofSeconds(30), 100);
+
+        assertThat(metrics.count("shapeA", query, strategy, "teamA")).isEqualTo(1);
+        assertThat(metrics.count("shapeA", query, strategy, "teamA")).isEqualTo(1);
+        assertThat(metrics.count("shapeA", query, strategy, "teamA")).isEqualTo(1);
+
+        assertThat(queries).hasValue(1);
+        assertThat(registry.get("querydsl.query").tags("shape", "shapeA", "type", "count").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("querydsl.query.count.cached").tag("shape", "shapeA").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void uncachedStrategyIsAlwaysTimed() throws Exception {
+        metrics.count("shapeA", query, (key, countQuery) -> 7, "teamA");
+        metrics.count("shapeA", query, (key, countQuery) -> 7, "teamA");
+
+        assertThat(registry.get("querydsl.query").tags("shape", "shapeA", "type", "count").timer().count())
+                .isEqualTo(2);
+        assertThat(registry.find("querydsl.query.count.cached").counter()).isNull();
+    }
+}
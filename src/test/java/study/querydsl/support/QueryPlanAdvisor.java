@@ -0,0 +1,81 @@
+package study.querydsl.support;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * H2 EXPLAIN 결과에서 전체 스캔(tableScan)을 찾는다.
+ * 행 수가 rowThreshold 이하인 작은 테이블의 스캔은 문제 삼지 않는다.
+ * 현재 트랜잭션의 커넥션을 쓰므로 테스트에서 넣은 커밋 전 데이터도 행 수에 포함된다.
+ */
+public class QueryPlanAdvisor {
+
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* (\\w+)\\.(\\w+)\\.tableScan");
+
+    private final EntityManager em;
+    private final long rowThreshold;
+
+    public QueryPlanAdvisor(EntityManager em, long rowThreshold) {
+        this.em = em;
+        this.rowThreshold = rowThreshold;
+    }
+
+    public String explain(String sql, List<?> params) {
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1));
+                    }
+                    return plan.toString();
+                }
+            }
+        });
+    }
+
+    /**
+     * 전체 스캔하는 테이블 중 행 수가 rowThreshold 를 넘는 테이블
+     */
+    public List<String> fullScans(String sql, List<?> params) {
+        Set<String> tables = new LinkedHashSet<>();
+        Matcher matcher = TABLE_SCAN.matcher(explain(sql, params));
+        while (matcher.find()) {
+            tables.add(matcher.group(1) + "." + matcher.group(2));
+        }
+        List<String> offending = new ArrayList<>();
+        for (String table : tables) {
+            long rows = em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("select count(*) from " + table);
+                     ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            });
+            if (rows > rowThreshold) {
+                offending.add(table + " (" + rows + " rows)");
+            }
+        }
+        return offending;
+    }
+
+    public void assertNoFullScan(String sql, List<?> params) {
+        assertThat(fullScans(sql, params))
+                .as("full table scan in plan of: %s", sql)
+                .isEmpty();
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.support.ReadWriteRoutingDataSource.Route;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final DataSource primary = h2("routing_primary");
+    private final DataSource replica = h2("routing_replica");
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void writeGoesToPrimary() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(routing("select 0"));
+
+        assertThat(jdbc.queryForObject("select name from marker", String.class)).isEqualTo("routing_primary");
+    }
+
+    @Test
+    public void readOnlyGoesToReplica() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(routing("select 0"));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(jdbc.queryForObject("select name from marker", String.class)).isEqualTo("routing_replica");
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToPrimary() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(routing("select 5000"));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(jdbc.queryForObject("select name from marker", String.class)).isEqualTo("routing_primary");
+    }
+
+    @Test
+    public void unreachableReplicaFallsBackToPrimary() throws Exception {
+        JdbcTemplate jdbc = new JdbcTemplate(routing("select lag from no_such_table"));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(jdbc.queryForObject("select name from marker", String.class)).isEqualTo("routing_primary");
+    }
+
+    private DataSource routing(String lagQuery) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, lagQuery, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        monitor.probe();
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(monitor);
+        routing.setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private static DataSource h2(String name) {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists marker (name varchar(50))");
+        jdbc.update("delete from marker");
+        jdbc.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+}
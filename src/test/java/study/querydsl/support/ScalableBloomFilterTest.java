@@ -0,0 +1,40 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    public void noFalseNegativesAfterGrowing() throws Exception {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        long initialBits = filter.bitSize();
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("member" + i);
+        }
+
+        assertThat(filter.bitSize()).isGreaterThan(initialBits);
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(filter.mightContain("member" + i)).isTrue();
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysWithinBound() throws Exception {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("member" + i);
+        }
+
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / probes).isLessThan(2 * filter.getFpp());
+        assertThat(filter.expectedFpp()).isLessThan(2 * filter.getFpp());
+    }
+}